@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.benchmark;
+
+import com.aeells.hibernate.model.Parent;
+import com.aeells.hibernate.profiling.HibernateProfilingAspect;
+import com.aeells.hibernate.profiling.HibernateProfilingInterceptor;
+import com.aeells.hibernate.service.HibernateService;
+import com.aeells.hibernate.service.HibernateServiceImpl;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.WriterAppender;
+import org.hibernate.criterion.DetachedCriteria;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.orm.hibernate3.HibernateTemplate;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per call overhead of profiling {@link HibernateServiceImpl} through a Spring proxy, with the database stubbed out:
+ * trace disabled, and trace enabled for a single entity and a large list, against the unadvised service. Trace
+ * records are formatted by log4j and discarded.
+ */
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1) @Measurement(iterations = 5, time = 1) @Fork(2)
+@State(Scope.Benchmark)
+public class HibernateProfilingInterceptorBenchmark
+{
+    @Param({"false", "true"})
+    private boolean trace;
+
+    @Param({"1000"})
+    private int listSize;
+
+    private final DetachedCriteria criteria = DetachedCriteria.forClass(Parent.class);
+
+    private HibernateService<Parent> unadvised;
+
+    private HibernateService<Parent> profiled;
+
+    @Setup
+    public void setUp()
+    {
+        final Logger logger = Logger.getLogger(HibernateProfilingInterceptor.class);
+        logger.setAdditivity(false);
+        logger.addAppender(new WriterAppender(new PatternLayout("%m%n"), new OutputStreamWriter(new DiscardingOutputStream())));
+        logger.setLevel(trace ? Level.TRACE : Level.WARN);
+
+        //noinspection unchecked
+        unadvised = new HibernateServiceImpl<Parent>(new StubHibernateTemplate(listSize));
+
+        final HibernateProfilingAspect aspect = new HibernateProfilingAspect();
+        aspect.setInterceptor(new HibernateProfilingInterceptor());
+
+        final AspectJProxyFactory factory = new AspectJProxyFactory(new HibernateServiceImpl<Parent>(new StubHibernateTemplate(listSize)));
+        factory.addAspect(aspect);
+        profiled = factory.getProxy();
+    }
+
+    @Benchmark
+    public Object findByIdUnadvised()
+    {
+        return unadvised.findById(Parent.class, "1");
+    }
+
+    @Benchmark
+    public Object findById()
+    {
+        return profiled.findById(Parent.class, "1");
+    }
+
+    @Benchmark
+    public Object findListUnadvised()
+    {
+        return unadvised.find(criteria);
+    }
+
+    @Benchmark
+    public Object findList()
+    {
+        return profiled.find(criteria);
+    }
+
+    private static final class StubHibernateTemplate extends HibernateTemplate
+    {
+        private final Parent parent = new Parent(1);
+
+        private final List<Parent> parents = new ArrayList<Parent>();
+
+        private StubHibernateTemplate(final int listSize)
+        {
+            for (int i = 0; i < listSize; i++)
+            {
+                parents.add(new Parent(1));
+            }
+        }
+
+        @Override public Object get(final Class entityClass, final Serializable id)
+        {
+            return parent;
+        }
+
+        @Override public List findByCriteria(final DetachedCriteria criteria)
+        {
+            return parents;
+        }
+    }
+
+    private static final class DiscardingOutputStream extends OutputStream
+    {
+        @Override public void write(final int b)
+        {
+        }
+
+        @Override public void write(final byte[] b, final int off, final int len)
+        {
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.benchmark;
+
+import com.aeells.hibernate.model.Child;
+import com.aeells.hibernate.model.Parent;
+import com.aeells.hibernate.service.HibernateService;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Restrictions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.orm.hibernate3.HibernateTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link com.aeells.hibernate.service.HibernateServiceImpl} create, find and findById against in memory HSQLDB with the
+ * <code>Parent</code>/<code>Child</code> model, with and without profiling (live statistics, trace disabled).
+ */
+@BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1) @Measurement(iterations = 5, time = 1) @Fork(2)
+@State(Scope.Benchmark)
+public class HibernateServiceBenchmark
+{
+    private static final int SEEDED_VERSION = 1;
+
+    private static final int CREATED_VERSION = 2;
+
+    @Param({"false", "true"})
+    private boolean profiled;
+
+    @Param({"100"})
+    private int parents;
+
+    private ClassPathXmlApplicationContext context;
+
+    private HibernateTemplate hibernateTemplate;
+
+    private HibernateService<Parent> service;
+
+    private String[] ids;
+
+    private int next;
+
+    private final DetachedCriteria seeded = DetachedCriteria.forClass(Parent.class).add(Restrictions.eq("version", SEEDED_VERSION));
+
+    @Setup
+    public void setUp()
+    {
+        context = new ClassPathXmlApplicationContext("benchmark-context.xml");
+        hibernateTemplate = context.getBean("hibernateTemplate", HibernateTemplate.class);
+        //noinspection unchecked
+        service = (HibernateService<Parent>) context.getBean(profiled ? "profiledService" : "unprofiledService");
+
+        ids = new String[parents];
+        for (int i = 0; i < parents; i++)
+        {
+            final Parent parent = newParent(SEEDED_VERSION);
+            hibernateTemplate.saveOrUpdate(parent);
+            ids[i] = parent.getId();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteCreated()
+    {
+        hibernateTemplate.bulkUpdate("delete from Child where version = ?", CREATED_VERSION);
+        hibernateTemplate.bulkUpdate("delete from Parent where version = ?", CREATED_VERSION);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        context.close();
+    }
+
+    @Benchmark
+    public void create()
+    {
+        service.create(newParent(CREATED_VERSION));
+    }
+
+    @Benchmark
+    public Object find()
+    {
+        return service.find(seeded);
+    }
+
+    @Benchmark
+    public Object findById()
+    {
+        next = (next + 1) % ids.length;
+        return service.findById(Parent.class, ids[next]);
+    }
+
+    private static Parent newParent(final int version)
+    {
+        final Parent parent = new Parent(version);
+        parent.addChild(new Child(version, parent));
+        parent.addChild(new Child(version, parent));
+        return parent;
+    }
+}
\ No newline at end of file
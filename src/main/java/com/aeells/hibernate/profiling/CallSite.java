@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.apache.commons.lang.StringUtils;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.Signature;
+import org.aspectj.lang.reflect.MethodSignature;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// service and method names of a profiled join point, resolved once per method rather than on every call
+final class CallSite
+{
+    private static final ConcurrentMap<Method, CallSite> CALL_SITES = new ConcurrentHashMap<Method, CallSite>();
+
+    private final String service;
+
+    private final String method;
+
+    private CallSite(final Signature signature)
+    {
+        service = StringUtils.substringBefore(signature.getDeclaringType().getSimpleName(), "$");
+        method = signature.getName();
+    }
+
+    static CallSite of(final JoinPoint call)
+    {
+        final Signature signature = call.getSignature();
+
+        if (!(signature instanceof MethodSignature))
+        {
+            return new CallSite(signature);
+        }
+
+        // woven join points share one signature per method, spring proxies create one per call but share the method
+        final Method key = ((MethodSignature) signature).getMethod();
+        final CallSite callSite = CALL_SITES.get(key);
+
+        if (callSite != null)
+        {
+            return callSite;
+        }
+
+        final CallSite created = new CallSite(signature);
+        final CallSite existing = CALL_SITES.putIfAbsent(key, created);
+        return existing == null ? created : existing;
+    }
+
+    String getService()
+    {
+        return service;
+    }
+
+    String getMethod()
+    {
+        return method;
+    }
+}
\ No newline at end of file
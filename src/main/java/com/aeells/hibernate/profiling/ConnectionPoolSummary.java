@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+/**
+ * Point in time copy of a {@link ProfilingDataSource}, in milliseconds, as exposed over JMX.
+ */
+public final class ConnectionPoolSummary
+{
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    private final int waiting;
+
+    private final long maxWaiting;
+
+    private final int active;
+
+    private final long maxActive;
+
+    private final long acquisitions;
+
+    private final double acquireMillis;
+
+    private final double maxAcquireMillis;
+
+    private final long releases;
+
+    private final double heldMillis;
+
+    private final double maxHeldMillis;
+
+    ConnectionPoolSummary(final ProfilingDataSource dataSource)
+    {
+        this.waiting = dataSource.getWaiting();
+        this.maxWaiting = dataSource.getMaxWaiting();
+        this.active = dataSource.getActive();
+        this.maxActive = dataSource.getMaxActive();
+        this.acquisitions = dataSource.getAcquisitions();
+        this.acquireMillis = dataSource.getAcquireNanos() / NANOS_PER_MILLI;
+        this.maxAcquireMillis = dataSource.getMaxAcquireNanos() / NANOS_PER_MILLI;
+        this.releases = dataSource.getReleases();
+        this.heldMillis = dataSource.getHeldNanos() / NANOS_PER_MILLI;
+        this.maxHeldMillis = dataSource.getMaxHeldNanos() / NANOS_PER_MILLI;
+    }
+
+    public int getWaiting()
+    {
+        return waiting;
+    }
+
+    public long getMaxWaiting()
+    {
+        return maxWaiting;
+    }
+
+    public int getActive()
+    {
+        return active;
+    }
+
+    public long getMaxActive()
+    {
+        return maxActive;
+    }
+
+    public long getAcquisitions()
+    {
+        return acquisitions;
+    }
+
+    public double getMeanAcquireMillis()
+    {
+        return acquisitions == 0 ? 0d : acquireMillis / acquisitions;
+    }
+
+    public double getMaxAcquireMillis()
+    {
+        return maxAcquireMillis;
+    }
+
+    public long getReleases()
+    {
+        return releases;
+    }
+
+    public double getMeanHeldMillis()
+    {
+        return releases == 0 ? 0d : heldMillis / releases;
+    }
+
+    public double getMaxHeldMillis()
+    {
+        return maxHeldMillis;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+// connection pool use by one thread during one profiled call, gathered by ProfilingDataSource
+final class ConnectionUsage
+{
+    private long acquisitions;
+
+    private long acquireNanos;
+
+    private long heldNanos;
+
+    private long waiting;
+
+    void acquired(final long nanos, final long waitingAhead)
+    {
+        acquisitions++;
+        acquireNanos += nanos;
+        waiting = Math.max(waiting, waitingAhead);
+    }
+
+    void released(final long nanos)
+    {
+        heldNanos += nanos;
+    }
+
+    void clear()
+    {
+        acquisitions = 0L;
+        acquireNanos = 0L;
+        heldNanos = 0L;
+        waiting = 0L;
+    }
+
+    /**
+     * @return whether a connection was acquired or released during the call; calls within a transaction use the
+     * connection bound to it and do neither.
+     */
+    boolean isUsed()
+    {
+        return acquisitions > 0 || heldNanos > 0;
+    }
+
+    long getAcquireNanos()
+    {
+        return acquireNanos;
+    }
+
+    long getHeldNanos()
+    {
+        return heldNanos;
+    }
+
+    /**
+     * @return most callers already waiting for a connection when this call asked for one.
+     */
+    long getWaiting()
+    {
+        return waiting;
+    }
+}
\ No newline at end of file
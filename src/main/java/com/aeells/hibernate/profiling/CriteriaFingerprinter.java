@@ -0,0 +1,283 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.hibernate.criterion.CriteriaSpecification;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.MatchMode;
+import org.hibernate.impl.CriteriaImpl;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reduces a {@link DetachedCriteria} to its shape: root entity, joins, restrictions, projection and orderings with
+ * every literal value replaced by <code>?</code>, e.g. <code>Parent join children c where c.SimpleExpression(version,?,false,=) order by id asc</code>.
+ * Criteria which differ only in their values share a fingerprint.
+ * <p/>
+ * Fingerprints are cached per criteria instance, weakly, and recomputed should restrictions, joins, orderings or a
+ * projection be added after the criteria was first fingerprinted. The cache is striped by identity hash so that
+ * concurrent finds seldom wait on one another.
+ */
+final class CriteriaFingerprinter
+{
+    private static final Collection<String> LITERAL_FIELDS = new ArrayList<String>();
+
+    static
+    {
+        Collections.addAll(LITERAL_FIELDS, "value", "values", "lo", "hi", "typedValues", "entity", "params");
+    }
+
+    // a power of two, so that a stripe is picked by masking the identity hash
+    private static final int STRIPES = 32;
+
+    private final List<Map<DetachedCriteria, Fingerprint>> fingerprints = new ArrayList<Map<DetachedCriteria, Fingerprint>>(STRIPES);
+
+    private final ConcurrentMap<Class<?>, Field[]> fields = new ConcurrentHashMap<Class<?>, Field[]>();
+
+    CriteriaFingerprinter()
+    {
+        for (int i = 0; i < STRIPES; i++)
+        {
+            fingerprints.add(new WeakHashMap<DetachedCriteria, Fingerprint>());
+        }
+    }
+
+    /**
+     * @return <code>null</code> when the criteria cannot be inspected.
+     */
+    String fingerprint(final DetachedCriteria criteria)
+    {
+        final CriteriaImpl impl = CriteriaInspector.getCriteriaImpl(criteria);
+
+        if (impl == null)
+        {
+            return null;
+        }
+
+        final int structure = structureOf(impl);
+        final Map<DetachedCriteria, Fingerprint> stripe = fingerprints.get(System.identityHashCode(criteria) & (STRIPES - 1));
+        Fingerprint fingerprint;
+
+        // a weak map expunges on reads too
+        synchronized (stripe)
+        {
+            fingerprint = stripe.get(criteria);
+        }
+
+        if (fingerprint == null || fingerprint.structure != structure)
+        {
+            fingerprint = new Fingerprint(describe(impl, new StringBuilder()).toString(), structure);
+
+            synchronized (stripe)
+            {
+                stripe.put(criteria, fingerprint);
+            }
+        }
+
+        return fingerprint.text;
+    }
+
+    private static int structureOf(final CriteriaImpl impl)
+    {
+        return count(impl.iterateExpressionEntries()) + 31 * (count(impl.iterateOrderings()) + 31 * count(impl.iterateSubcriteria())) +
+               (impl.getProjection() == null ? 0 : 1 << 30);
+    }
+
+    private static int count(final Iterator<?> iterator)
+    {
+        int count = 0;
+        for (; iterator.hasNext(); iterator.next())
+        {
+            count++;
+        }
+        return count;
+    }
+
+    private StringBuilder describe(final CriteriaImpl impl, final StringBuilder sb)
+    {
+        final String entity = impl.getEntityOrClassName();
+        sb.append(entity.substring(entity.lastIndexOf('.') + 1));
+
+        for (final Iterator<?> subcriteria = impl.iterateSubcriteria(); subcriteria.hasNext(); )
+        {
+            final CriteriaImpl.Subcriteria join = (CriteriaImpl.Subcriteria) subcriteria.next();
+            sb.append(joinTypeOf(join.getJoinType())).append(join.getPath()).append(' ').append(join.getAlias());
+        }
+
+        String separator = " where ";
+        for (final Iterator<?> entries = impl.iterateExpressionEntries(); entries.hasNext(); separator = " and ")
+        {
+            final CriteriaImpl.CriterionEntry entry = (CriteriaImpl.CriterionEntry) entries.next();
+            sb.append(separator);
+
+            if (entry.getCriteria() instanceof CriteriaImpl.Subcriteria)
+            {
+                sb.append(((CriteriaImpl.Subcriteria) entry.getCriteria()).getAlias()).append('.');
+            }
+
+            describeValue(entry.getCriterion(), sb);
+        }
+
+        if (impl.getProjection() != null)
+        {
+            sb.append(" select ").append(impl.getProjection());
+        }
+
+        separator = " order by ";
+        for (final Iterator<?> orderings = impl.iterateOrderings(); orderings.hasNext(); separator = ", ")
+        {
+            sb.append(separator).append(((CriteriaImpl.OrderEntry) orderings.next()).getOrder());
+        }
+
+        return sb;
+    }
+
+    private static String joinTypeOf(final int joinType)
+    {
+        switch (joinType)
+        {
+            case CriteriaSpecification.LEFT_JOIN:
+                return " left join ";
+            case CriteriaSpecification.FULL_JOIN:
+                return " full join ";
+            default:
+                return " join ";
+        }
+    }
+
+    // literal values and anything not contributing to the shape, such as types resolved on execution, are left out
+    private void describeValue(final Object value, final StringBuilder sb)
+    {
+        if (value instanceof Criterion)
+        {
+            sb.append(value.getClass().getSimpleName()).append('(');
+            boolean first = true;
+
+            for (final Field field : fieldsOf(value.getClass()))
+            {
+                final Object fieldValue = read(field, value);
+
+                if (isShape(fieldValue) || LITERAL_FIELDS.contains(field.getName()))
+                {
+                    sb.append(first ? "" : ",");
+                    first = false;
+
+                    if (LITERAL_FIELDS.contains(field.getName()))
+                    {
+                        sb.append('?');
+                    }
+                    else if ("sql".equals(field.getName()))
+                    {
+                        sb.append(RepeatedQueryDetector.fingerprint((String) fieldValue));
+                    }
+                    else
+                    {
+                        describeValue(fieldValue instanceof String ? ((String) fieldValue).trim() : fieldValue, sb);
+                    }
+                }
+            }
+
+            sb.append(')');
+        }
+        else if (value instanceof CriteriaImpl)
+        {
+            describe((CriteriaImpl) value, sb.append('(')).append(')');
+        }
+        else if (value instanceof Collection)
+        {
+            sb.append('[');
+            for (final Iterator<?> elements = ((Collection<?>) value).iterator(); elements.hasNext(); )
+            {
+                describeValue(elements.next(), sb);
+                sb.append(elements.hasNext() ? "," : "");
+            }
+            sb.append(']');
+        }
+        else
+        {
+            sb.append(value);
+        }
+    }
+
+    private static boolean isShape(final Object value)
+    {
+        return value instanceof String || value instanceof Boolean || value instanceof Character || value instanceof MatchMode || value instanceof Enum ||
+               value instanceof Criterion || value instanceof CriteriaImpl || value instanceof Collection;
+    }
+
+    private Field[] fieldsOf(final Class<?> type)
+    {
+        Field[] declared = fields.get(type);
+
+        if (declared == null)
+        {
+            final List<Field> instanceFields = new ArrayList<Field>();
+
+            for (Class<?> declaring = type; declaring != null && declaring != Object.class; declaring = declaring.getSuperclass())
+            {
+                for (final Field field : declaring.getDeclaredFields())
+                {
+                    if (!Modifier.isStatic(field.getModifiers()))
+                    {
+                        field.setAccessible(true);
+                        instanceFields.add(field);
+                    }
+                }
+            }
+
+            declared = instanceFields.toArray(new Field[instanceFields.size()]);
+            fields.putIfAbsent(type, declared);
+        }
+
+        return declared;
+    }
+
+    private static Object read(final Field field, final Object target)
+    {
+        try
+        {
+            return field.get(target);
+        }
+        catch (final IllegalAccessException e)
+        {
+            return null;
+        }
+    }
+
+    private static final class Fingerprint
+    {
+        private final String text;
+
+        private final int structure;
+
+        private Fingerprint(final String text, final int structure)
+        {
+            this.text = text;
+            this.structure = structure;
+        }
+    }
+}
\ No newline at end of file
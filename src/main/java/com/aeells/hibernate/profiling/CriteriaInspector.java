@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.impl.CriteriaImpl;
+
+import java.lang.reflect.Field;
+
+/**
+ * Read only access to the state Hibernate keeps private within a {@link DetachedCriteria}.
+ */
+final class CriteriaInspector
+{
+    private static final Field IMPL = findImplField();
+
+    private CriteriaInspector()
+    {
+    }
+
+    /**
+     * @return the root entity name or class name; <code>null</code> if it cannot be determined.
+     */
+    static String getEntityOrClassName(final DetachedCriteria criteria)
+    {
+        final CriteriaImpl impl = getCriteriaImpl(criteria);
+        return impl == null ? null : impl.getEntityOrClassName();
+    }
+
+    static CriteriaImpl getCriteriaImpl(final DetachedCriteria criteria)
+    {
+        if (IMPL == null || criteria == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return (CriteriaImpl) IMPL.get(criteria);
+        }
+        catch (final IllegalAccessException e)
+        {
+            return null;
+        }
+    }
+
+    private static Field findImplField()
+    {
+        try
+        {
+            final Field impl = DetachedCriteria.class.getDeclaredField("impl");
+            impl.setAccessible(true);
+            return impl;
+        }
+        catch (final Exception e)
+        {
+            return null;
+        }
+    }
+}
\ No newline at end of file
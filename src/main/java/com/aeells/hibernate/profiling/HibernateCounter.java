@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+/**
+ * Hibernate activity counted on the calling thread and captured as per call deltas, telling a slow query from many
+ * fast loads. Written after the duration of a profile record as e.g.
+ * <code>sql=1 load=40 fetch=0 coll=40 hit=0 miss=0 qhit=0 qmiss=1</code>, <code>hit</code> and <code>miss</code> being
+ * second level cache lookups of entities and <code>qhit</code> and <code>qmiss</code> query cache lookups. Statements
+ * are counted by the {@link RepeatedQueryDetector}, loads and second level cache lookups by the
+ * {@link ProfilingLoadEventListener} and query cache lookups by the {@link ProfilingQueryCacheFactory}.
+ */
+public enum HibernateCounter
+{
+    STATEMENTS("sql"),
+    ENTITY_LOADS("load"),
+    ENTITY_FETCHES("fetch"),
+    COLLECTION_LOADS("coll"),
+    CACHE_HITS("hit"),
+    CACHE_MISSES("miss"),
+    QUERY_CACHE_HITS("qhit"),
+    QUERY_CACHE_MISSES("qmiss");
+
+    static final HibernateCounter[] VALUES = values();
+
+    public static final int COUNT = VALUES.length;
+
+    // unlike the factory statistics, counts on one thread leave out the calls running concurrently on others
+    private static final ThreadLocal<long[]> THREAD_COUNTS = new ThreadLocal<long[]>()
+    {
+        @Override protected long[] initialValue()
+        {
+            return new long[COUNT];
+        }
+    };
+
+    private final String label;
+
+    private HibernateCounter(final String label)
+    {
+        this.label = label;
+    }
+
+    public String getLabel()
+    {
+        return label;
+    }
+
+    void increment()
+    {
+        THREAD_COUNTS.get()[ordinal()]++;
+    }
+
+    void decrement()
+    {
+        THREAD_COUNTS.get()[ordinal()]--;
+    }
+
+    /**
+     * @return running counts on the current thread, indexed by ordinal; callers take deltas and never write to them.
+     */
+    static long[] threadCounts()
+    {
+        return THREAD_COUNTS.get();
+    }
+
+    static HibernateCounter forLabel(final String label)
+    {
+        for (final HibernateCounter counter : VALUES)
+        {
+            if (counter.label.equals(label))
+            {
+                return counter;
+            }
+        }
+
+        return null;
+    }
+}
\ No newline at end of file
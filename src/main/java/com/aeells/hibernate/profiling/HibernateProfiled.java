@@ -30,4 +30,16 @@ import java.lang.annotation.Target;
 public @interface HibernateProfiled
 {
     String identifier() default "id";
+
+    /**
+     * Fraction, between 0 and 1, of calls for this class that produce a detailed profile record. Statistics still count
+     * every call. Negative values defer to the interceptor's sample rate.
+     */
+    double sampleRate() default -1d;
+
+    /**
+     * Calls for this class faster than this produce no detailed profile record, only statistics. Negative values defer
+     * to the interceptor's threshold.
+     */
+    long slowCallThresholdMillis() default -1L;
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.apache.commons.lang.Validate;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+
+import java.util.Collection;
+
+/**
+ * Profiles every {@link com.aeells.hibernate.service.HibernateServiceImpl} method through a
+ * {@link HibernateProfilingInterceptor}, replacing the <code>aop:config</code> pointcuts. Applied by compile or load
+ * time weaving (opt in through <code>META-INF/aop-hibernate-profiling.xml</code>, shipped in the jar) or by Spring
+ * <code>aop:aspectj-autoproxy</code>; when woven, configure the singleton through <code>factory-method="aspectOf"</code>.
+ */
+@Aspect
+public class HibernateProfilingAspect
+{
+    private volatile HibernateProfilingInterceptor interceptor = new HibernateProfilingInterceptor();
+
+    public void setInterceptor(final HibernateProfilingInterceptor interceptor)
+    {
+        Validate.notNull(interceptor, "interceptor cannot be null!");
+        this.interceptor = interceptor;
+    }
+
+    public HibernateProfilingInterceptor getInterceptor()
+    {
+        return interceptor;
+    }
+
+    @Pointcut(argNames = "model",
+              value = "execution(* com.aeells.hibernate.service.HibernateServiceImpl.create(com.aeells.hibernate.Createable)) && args(model) || " +
+              "execution(* com.aeells.hibernate.service.HibernateServiceImpl.update(com.aeells.hibernate.Updateable)) && args(model) || " +
+              "execution(* com.aeells.hibernate.service.HibernateServiceImpl.delete(com.aeells.hibernate.Deleteable)) && args(model)")
+    public void writes(final Object model)
+    {
+    }
+
+    @Pointcut(argNames = "models",
+              value = "execution(int com.aeells.hibernate.service.HibernateServiceImpl.createAll(java.util.Collection)) && args(models) || " +
+              "execution(int com.aeells.hibernate.service.HibernateServiceImpl.updateAll(java.util.Collection)) && args(models) || " +
+              "execution(int com.aeells.hibernate.service.HibernateServiceImpl.deleteAll(java.util.Collection)) && args(models)")
+    public void writeBatches(final Collection<?> models)
+    {
+    }
+
+    @Pointcut("execution(* com.aeells.hibernate.service.HibernateServiceImpl.findById(Class, String)) || " +
+              "execution(* com.aeells.hibernate.service.HibernateServiceImpl.findUnique(org.hibernate.criterion.DetachedCriteria)) || " +
+              "execution(* com.aeells.hibernate.service.HibernateServiceImpl.findFirstOrderedBy(org.hibernate.criterion.DetachedCriteria))")
+    public void finds()
+    {
+    }
+
+    @Pointcut("execution(java.util.List com.aeells.hibernate.service.HibernateServiceImpl.find(org.hibernate.criterion.DetachedCriteria)) || " +
+              "execution(java.util.List com.aeells.hibernate.service.HibernateServiceImpl.find(org.hibernate.criterion.DetachedCriteria, int, int))")
+    public void findLists()
+    {
+    }
+
+    @Pointcut(argNames = "cacheRegion",
+              value = "execution(* com.aeells.hibernate.service.HibernateServiceImpl.findUnique(org.hibernate.criterion.DetachedCriteria, String)) && args(*, cacheRegion) || " +
+              "execution(java.util.List com.aeells.hibernate.service.HibernateServiceImpl.find(org.hibernate.criterion.DetachedCriteria, String)) && args(*, cacheRegion)")
+    public void cacheableFinds(final String cacheRegion)
+    {
+    }
+
+    @Around(argNames = "model", value = "writes(model)")
+    public Object profileWrites(final ProceedingJoinPoint call, final Object model) throws Throwable
+    {
+        interceptor.profileWrites(call, model);
+        return null;
+    }
+
+    @Pointcut("execution(java.util.List com.aeells.hibernate.service.HibernateServiceImpl.findByIds(Class, java.util.Collection))")
+    public void findByIds()
+    {
+    }
+
+    @Pointcut("execution(com.aeells.hibernate.service.Page com.aeells.hibernate.service.HibernateServiceImpl.findPage(org.hibernate.criterion.DetachedCriteria, String, com.aeells.hibernate.service.PageKey, int))")
+    public void findPages()
+    {
+    }
+
+    @Pointcut("execution(int com.aeells.hibernate.service.HibernateServiceImpl.scroll(org.hibernate.criterion.DetachedCriteria, int, com.aeells.hibernate.service.ResultHandler))")
+    public void scrolls()
+    {
+    }
+
+    @Around(argNames = "models", value = "writeBatches(models)")
+    public Object profileWriteBatch(final ProceedingJoinPoint call, final Collection<?> models) throws Throwable
+    {
+        return interceptor.profileWriteBatch(call, models);
+    }
+
+    @Around("finds()")
+    public Object profileFind(final ProceedingJoinPoint call) throws Throwable
+    {
+        return interceptor.profileFind(call);
+    }
+
+    @Around("findLists()")
+    public Object profileFindList(final ProceedingJoinPoint call) throws Throwable
+    {
+        return interceptor.profileFindList(call);
+    }
+
+    @Around(argNames = "cacheRegion", value = "cacheableFinds(cacheRegion)")
+    public Object profileCacheableFind(final ProceedingJoinPoint call, final String cacheRegion) throws Throwable
+    {
+        return interceptor.profileCacheableFind(call, cacheRegion);
+    }
+
+    @Around("findByIds()")
+    public Object profileFindByIds(final ProceedingJoinPoint call) throws Throwable
+    {
+        return interceptor.profileFindByIds(call);
+    }
+
+    @Around("findPages()")
+    public Object profileFindPage(final ProceedingJoinPoint call) throws Throwable
+    {
+        return interceptor.profileFindPage(call);
+    }
+
+    @Around("scrolls()")
+    public Object profileScroll(final ProceedingJoinPoint call) throws Throwable
+    {
+        return interceptor.profileScroll(call);
+    }
+}
\ No newline at end of file
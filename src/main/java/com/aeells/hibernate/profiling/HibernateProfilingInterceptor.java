@@ -15,74 +15,810 @@
 
 package com.aeells.hibernate.profiling;
 
-import org.apache.commons.beanutils.BeanUtils;
+import com.aeells.hibernate.service.MultiGetResult;
+import com.aeells.hibernate.service.Page;
+import com.aeells.hibernate.service.ResultHandler;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
 import org.apache.log4j.Logger;
 import org.aspectj.lang.ProceedingJoinPoint;
-import org.joda.time.DateTime;
-import org.joda.time.Duration;
+import org.hibernate.criterion.DetachedCriteria;
 
-import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
-// Log4j configuration (TRACE) triggers whether performance statistics are recorded
+// Log4j configuration (TRACE) triggers whether profile records are written; statistics, when configured, are always kept
 public final class HibernateProfilingInterceptor
 {
     private static final Logger LOGGER = Logger.getLogger(HibernateProfilingInterceptor.class);
 
+    private final ProfiledClassRegistry registry = new ProfiledClassRegistry();
+
+    private final ThreadLocal<ProfileEvent> events = new ThreadLocal<ProfileEvent>()
+    {
+        @Override protected ProfileEvent initialValue()
+        {
+            return new ProfileEvent();
+        }
+    };
+
+    // profiled service methods do not nest so one array per thread holds the counters across a call
+    private final ThreadLocal<long[]> counters = new ThreadLocal<long[]>()
+    {
+        @Override protected long[] initialValue()
+        {
+            return new long[HibernateCounter.COUNT];
+        }
+    };
+
+    private final ThreadLocal<PendingWrites> pendingWrites = new ThreadLocal<PendingWrites>()
+    {
+        @Override protected PendingWrites initialValue()
+        {
+            return new PendingWrites();
+        }
+    };
+
+    private ProfileEventHandler profileEventHandler = new ProfileLogWriter();
+
+    private static final int DEFAULT_MAX_LOGGED_IDENTIFIERS = 10;
+
+    private final Sampler sampler = new Sampler();
+
+    private ProfilingStatistics statistics;
+
+    private ProfilingStatistics queryShapeStatistics;
+
+    private ProfilingStatistics cacheRegionStatistics;
+
+    private ProfilingStatistics transactionStatistics;
+
+    private ProfilingStatistics flushStatistics;
+
+    private final CriteriaFingerprinter fingerprinter = new CriteriaFingerprinter();
+
+    private RepeatedQueryDetector repeatedQueryDetector;
+
+    private ProfilingDataSource dataSource;
+
+    private volatile int maxLoggedIdentifiers = DEFAULT_MAX_LOGGED_IDENTIFIERS;
+
+    private volatile boolean estimateResultSize;
+
+    private volatile boolean profileTransactions;
+
+    private volatile boolean traceCalls = true;
+
+    private volatile boolean profileFlushes;
+
+    private volatile boolean countHibernateActivity;
+
+    /**
+     * Defaults to a {@link ProfileLogWriter}; a {@link ProfileRingBuffer} moves formatting and I/O off the calling thread.
+     */
+    public void setProfileEventHandler(final ProfileEventHandler profileEventHandler)
+    {
+        this.profileEventHandler = profileEventHandler;
+    }
+
+    /**
+     * Optional live latency statistics, recorded for every profiled call whatever the log level.
+     */
+    public void setStatistics(final ProfilingStatistics statistics)
+    {
+        this.statistics = statistics;
+    }
+
+    public ProfilingStatistics getStatistics()
+    {
+        return statistics;
+    }
+
+    /**
+     * Optional live statistics per <code>DetachedCriteria</code> shape, keyed by method and criteria fingerprint, e.g.
+     * <code>find|Parent where SimpleExpression(version,?,false,=)</code>, so that different queries against one entity
+     * are told apart.
+     */
+    public void setQueryShapeStatistics(final ProfilingStatistics queryShapeStatistics)
+    {
+        this.queryShapeStatistics = queryShapeStatistics;
+    }
+
+    public ProfilingStatistics getQueryShapeStatistics()
+    {
+        return queryShapeStatistics;
+    }
+
+    /**
+     * Optional live statistics per cache region of cacheable finds, keyed by method and region, e.g.
+     * <code>find|referenceData</code>; their cache hits and misses need Hibernate activity counted.
+     */
+    public void setCacheRegionStatistics(final ProfilingStatistics cacheRegionStatistics)
+    {
+        this.cacheRegionStatistics = cacheRegionStatistics;
+    }
+
+    public ProfilingStatistics getCacheRegionStatistics()
+    {
+        return cacheRegionStatistics;
+    }
+
+    /**
+     * Optional live statistics per transaction outcome and name, e.g. <code>commit|OrderService.placeOrder</code>, kept
+     * apart from the calls they roll up; needs transactions profiled.
+     */
+    public void setTransactionStatistics(final ProfilingStatistics transactionStatistics)
+    {
+        this.transactionStatistics = transactionStatistics;
+    }
+
+    public ProfilingStatistics getTransactionStatistics()
+    {
+        return transactionStatistics;
+    }
+
+    /**
+     * Optional live statistics per flush and the entities it wrote, e.g. <code>flush|Parent,Child</code>, kept apart
+     * from the calls whose writes it executes; needs a {@link ProfilingFlushEventListener}.
+     */
+    public void setFlushStatistics(final ProfilingStatistics flushStatistics)
+    {
+        this.flushStatistics = flushStatistics;
+    }
+
+    public ProfilingStatistics getFlushStatistics()
+    {
+        return flushStatistics;
+    }
+
+    /**
+     * Optional; when set, {@link HibernateCounter} deltas (statements, entity and collection loads, second level and
+     * query cache hits and misses) are captured around each profiled call. They are counted on the calling thread, so
+     * calls running concurrently on other threads are left out, by the {@link RepeatedQueryDetector} entity interceptor
+     * and the {@link ProfilingLoadEventListener}, which must be registered with the session factory.
+     */
+    public void setCountHibernateActivity(final boolean countHibernateActivity)
+    {
+        this.countHibernateActivity = countHibernateActivity;
+    }
+
+    boolean isCountingHibernateActivity()
+    {
+        return countHibernateActivity;
+    }
+
+    /**
+     * Optional; the session factory's data source wrapped in a {@link ProfilingDataSource}, adding the time spent
+     * acquiring and holding connections and the callers waiting for one to the calls which acquired or released a
+     * connection.
+     */
+    public void setDataSource(final ProfilingDataSource dataSource)
+    {
+        this.dataSource = dataSource;
+    }
+
+    public ProfilingDataSource getDataSource()
+    {
+        return dataSource;
+    }
+
+    /**
+     * Optional; names the service calls originating N+1 queries, whether or not profiling is enabled.
+     */
+    public void setRepeatedQueryDetector(final RepeatedQueryDetector repeatedQueryDetector)
+    {
+        this.repeatedQueryDetector = repeatedQueryDetector;
+    }
+
+    /**
+     * Identifiers recorded from a list result, keeping records and their cost flat however many rows are returned;
+     * the row count is always recorded. Defaults to 10.
+     */
+    public void setMaxLoggedIdentifiers(final int maxLoggedIdentifiers)
+    {
+        Validate.isTrue(maxLoggedIdentifiers >= 0, "max logged identifiers cannot be negative!");
+        this.maxLoggedIdentifiers = maxLoggedIdentifiers;
+    }
+
+    public int getMaxLoggedIdentifiers()
+    {
+        return maxLoggedIdentifiers;
+    }
+
+    /**
+     * Adds the approximate size of list results to their records: rows times the shallow size of the profiled class,
+     * excluding referenced strings and associations. Off by default.
+     */
+    public void setEstimateResultSize(final boolean estimateResultSize)
+    {
+        this.estimateResultSize = estimateResultSize;
+    }
+
+    public boolean isEstimateResultSize()
+    {
+        return estimateResultSize;
+    }
+
+    /**
+     * Rolls the profiled calls made within each Spring managed transaction up into one summary record on commit or
+     * rollback, <code>Transaction|commit|OrderService.placeOrder|findById:Parent*3,find:Child*1|duration|calls=4 commitNanos=n</code>,
+     * the duration being total database time including the flush and commit. Off by default.
+     */
+    public void setProfileTransactions(final boolean profileTransactions)
+    {
+        this.profileTransactions = profileTransactions;
+    }
+
+    public boolean isProfileTransactions()
+    {
+        return profileTransactions;
+    }
+
+    /**
+     * Whether a record is written per call; turned off to keep only transaction summaries. Defaults to true.
+     */
+    public void setTraceCalls(final boolean traceCalls)
+    {
+        this.traceCalls = traceCalls;
+    }
+
+    public boolean isTraceCalls()
+    {
+        return traceCalls;
+    }
+
+    /**
+     * Fraction, between 0 and 1, of calls producing a detailed profile record unless overridden by
+     * {@link HibernateProfiled#sampleRate()}. Defaults to 1; statistics always count every call.
+     */
+    public void setSampleRate(final double sampleRate)
+    {
+        sampler.setSampleRate(sampleRate);
+    }
+
+    public double getSampleRate()
+    {
+        return sampler.getSampleRate();
+    }
+
+    /**
+     * Caps the number of detailed profile records per second across all entities; 0, the default, is unlimited.
+     */
+    public void setMaxSampledPerSecond(final int maxSampledPerSecond)
+    {
+        sampler.setMaxSampledPerSecond(maxSampledPerSecond);
+    }
+
+    public int getMaxSampledPerSecond()
+    {
+        return sampler.getMaxSampledPerSecond();
+    }
+
+    /**
+     * Calls faster than this produce no detailed profile record unless overridden by
+     * {@link HibernateProfiled#slowCallThresholdMillis()}. Defaults to 0; statistics always count every call.
+     */
+    public void setSlowCallThresholdMillis(final long slowCallThresholdMillis)
+    {
+        sampler.setSlowCallThresholdNanos(TimeUnit.MILLISECONDS.toNanos(slowCallThresholdMillis));
+    }
+
+    public long getSlowCallThresholdMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(sampler.getSlowCallThresholdNanos());
+    }
+
+    // set by a ProfilingFlushEventListener, which needs the writes pending a flush
+    void setProfileFlushes(final boolean profileFlushes)
+    {
+        this.profileFlushes = profileFlushes;
+    }
+
+    ProfileEventHandler getProfileEventHandler()
+    {
+        return profileEventHandler;
+    }
+
+    ProfiledClassRegistry getRegistry()
+    {
+        return registry;
+    }
+
     public void profileWrites(final ProceedingJoinPoint call, final Object model) throws Throwable
     {
-        if (LOGGER.isTraceEnabled())
+        enterCall(call);
+
+        try
+        {
+            if (isProfiling())
+            {
+                final long[] before = startCounting();
+                addPendingWrite(call, model);
+                final long start = ProfilingClock.now();
+                proceed(call, model, start, before);
+                final long nanos = ProfilingClock.elapsedSince(start);
+                logProfileCall(call, model, null, nanos, stopCounting(before));
+            }
+            else
+            {
+                call.proceed();
+            }
+        }
+        finally
+        {
+            exitCall();
+        }
+    }
+
+    /**
+     * Profiles a bulk write as one record of the entities written, e.g.
+     * <code>HibernateServiceImpl|createAll|Child|1,2,3,...|812.400|rows=5000</code>.
+     */
+    public Object profileWriteBatch(final ProceedingJoinPoint call, final Collection<?> models) throws Throwable
+    {
+        enterCall(call);
+
+        try
+        {
+            if (isProfiling())
+            {
+                final long[] before = startCounting();
+                final boolean pending = addPendingBatch(call, models);
+
+                try
+                {
+                    final long start = ProfilingClock.now();
+                    final Object written = proceed(call, null, start, before);
+                    final long nanos = ProfilingClock.elapsedSince(start);
+                    logProfileBatch(call, models, written instanceof Integer ? (Integer) written : -1L, nanos, stopCounting(before));
+                    return written;
+                }
+                finally
+                {
+                    if (pending)
+                    {
+                        pendingWrites.get().endBatch();
+                    }
+                }
+            }
+            else
+            {
+                return call.proceed();
+            }
+        }
+        finally
+        {
+            exitCall();
+        }
+    }
+
+    public Object profileFind(final ProceedingJoinPoint call) throws Throwable
+    {
+        enterCall(call);
+
+        try
+        {
+            if (isProfiling())
+            {
+                final long[] before = startCounting();
+                final long start = ProfilingClock.now();
+                final Object model = proceed(call, null, start, before);
+                final long nanos = ProfilingClock.elapsedSince(start);
+                logProfileCall(call, model, null, nanos, stopCounting(before));
+                return model;
+            }
+            else
+            {
+                return call.proceed();
+            }
+        }
+        finally
+        {
+            exitCall();
+        }
+    }
+
+    public Object profileFindList(final ProceedingJoinPoint call) throws Throwable
+    {
+        enterCall(call);
+
+        try
+        {
+            if (isProfiling())
+            {
+                final long[] before = startCounting();
+                final long start = ProfilingClock.now();
+                @SuppressWarnings({"unchecked"}) final List<Object> models = (List<Object>) proceed(call, null, start, before);
+                final long nanos = ProfilingClock.elapsedSince(start);
+                logProfileCall(call, models, null, nanos, stopCounting(before));
+                return models;
+            }
+            else
+            {
+                return call.proceed();
+            }
+        }
+        finally
+        {
+            exitCall();
+        }
+    }
+
+    /**
+     * Profiles a cacheable <code>find</code> or <code>findUnique</code> as a list or single result, also aggregated per
+     * <code>method|cacheRegion</code> given cache region statistics.
+     */
+    public Object profileCacheableFind(final ProceedingJoinPoint call, final String cacheRegion) throws Throwable
+    {
+        enterCall(call);
+
+        try
+        {
+            if (isProfiling())
+            {
+                final long[] before = startCounting();
+                final long start = ProfilingClock.now();
+                final Object result = proceed(call, null, null, cacheRegion, start, before);
+                final long nanos = ProfilingClock.elapsedSince(start);
+
+                if (result instanceof List)
+                {
+                    //noinspection unchecked
+                    logProfileCall(call, (List<Object>) result, cacheRegion, nanos, stopCounting(before));
+                }
+                else
+                {
+                    logProfileCall(call, result, cacheRegion, nanos, stopCounting(before));
+                }
+
+                return result;
+            }
+            else
+            {
+                return call.proceed();
+            }
+        }
+        finally
+        {
+            exitCall();
+        }
+    }
+
+    /**
+     * Profiles a multi-get as a list result along with the identifiers requested, those found in the session and the
+     * queries issued for the rest, e.g.
+     * <code>HibernateServiceImpl|findByIds|Parent|4028e4...,...|1.870|rows=40 requested=42 sessionHits=12 queries=1</code>.
+     */
+    public Object profileFindByIds(final ProceedingJoinPoint call) throws Throwable
+    {
+        enterCall(call);
+
+        try
+        {
+            if (isProfiling())
+            {
+                final long[] before = startCounting();
+                final long start = ProfilingClock.now();
+                final List<?> models = (List<?>) proceed(call, null, start, before);
+                final long nanos = ProfilingClock.elapsedSince(start);
+                logProfileMultiGet(call, models, nanos, stopCounting(before));
+                return models;
+            }
+            else
+            {
+                return call.proceed();
+            }
+        }
+        finally
+        {
+            exitCall();
+        }
+    }
+
+    /**
+     * Profiles each keyset page as a list result of its rows.
+     */
+    public Object profileFindPage(final ProceedingJoinPoint call) throws Throwable
+    {
+        enterCall(call);
+
+        try
+        {
+            if (isProfiling())
+            {
+                final long[] before = startCounting();
+                final long start = ProfilingClock.now();
+                final Page<?> page = (Page<?>) proceed(call, null, start, before);
+                final long nanos = ProfilingClock.elapsedSince(start);
+                @SuppressWarnings({"unchecked"}) final List<Object> models = page == null ? null : (List<Object>) page.getResults();
+                logProfileCall(call, models, null, nanos, stopCounting(before));
+                return page;
+            }
+            else
+            {
+                return call.proceed();
+            }
+        }
+        finally
+        {
+            exitCall();
+        }
+    }
+
+    /**
+     * Profiles a streamed find as one record of the rows handled and the time to the first of them, e.g.
+     * <code>HibernateServiceImpl|scroll|Parent||95210.330|rows=1000000 firstRowNanos=1204000</code>; the duration
+     * includes the time spent handling rows.
+     */
+    public Object profileScroll(final ProceedingJoinPoint call) throws Throwable
+    {
+        enterCall(call);
+
+        try
+        {
+            if (isProfiling())
+            {
+                final Object[] args = call.getArgs();
+                final FirstRowTimer timer = wrapResultHandler(args);
+                final long[] before = startCounting();
+                final long start = ProfilingClock.now();
+                timer.start = start;
+                final Object rows = proceed(call, args, null, null, start, before);
+                final long nanos = ProfilingClock.elapsedSince(start);
+                logProfileScroll(call, rows instanceof Integer ? (Integer) rows : -1L, timer.firstRowNanos, nanos, stopCounting(before));
+                return rows;
+            }
+            else
+            {
+                return call.proceed();
+            }
+        }
+        finally
+        {
+            exitCall();
+        }
+    }
+
+    private static FirstRowTimer wrapResultHandler(final Object[] args)
+    {
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i] instanceof ResultHandler)
+            {
+                @SuppressWarnings({"unchecked"}) final FirstRowTimer timer = new FirstRowTimer((ResultHandler<Object>) args[i]);
+                args[i] = timer;
+                return timer;
+            }
+        }
+
+        return new FirstRowTimer(null);
+    }
+
+    private void enterCall(final ProceedingJoinPoint call)
+    {
+        if (repeatedQueryDetector != null)
+        {
+            final Object[] args = call.getArgs();
+            final Object argument = args == null || args.length == 0 ? null : args[0];
+            String entity = null;
+
+            if (argument instanceof Class)
+            {
+                entity = ((Class<?>) argument).getName();
+            }
+            else if (argument instanceof DetachedCriteria)
+            {
+                entity = CriteriaInspector.getEntityOrClassName((DetachedCriteria) argument);
+            }
+            else if (argument != null)
+            {
+                entity = argument.getClass().getName();
+            }
+
+            final CallSite callSite = CallSite.of(call);
+            repeatedQueryDetector.enterCall(callSite.getService() + "." + callSite.getMethod() + "(" + (entity == null ? "" : StringUtils.substringAfterLast("." + entity, ".")) + ")");
+        }
+    }
+
+    private void exitCall()
+    {
+        if (repeatedQueryDetector != null)
+        {
+            repeatedQueryDetector.exitCall();
+        }
+    }
+
+    // registered before the call proceeds as a template write may flush within it
+    private void addPendingWrite(final ProceedingJoinPoint call, final Object model)
+    {
+        if (profileFlushes && model != null)
         {
-            final DateTime start = new DateTime();
-            call.proceed();
-            logProfileCall(call, model, (new Duration(start, new DateTime()).getMillis()));
+            final ProfiledClass profiledClass = registry.lookup(model.getClass());
+
+            if (isEnabled(profiledClass))
+            {
+                pendingWrites.get().add(CallSite.of(call).getMethod(), profiledClass.getEntityName());
+            }
         }
-        else
+    }
+
+    private boolean addPendingBatch(final ProceedingJoinPoint call, final Collection<?> models)
+    {
+        if (profileFlushes && models != null && !models.isEmpty())
         {
-            call.proceed();
+            final ProfiledClass profiledClass = findProfiledClass(models);
+
+            if (isEnabled(profiledClass))
+            {
+                pendingWrites.get().beginBatch(CallSite.of(call).getMethod(), profiledClass.getEntityName(), models.size());
+                return true;
+            }
         }
+
+        return false;
     }
 
-    public Object profileFind(final ProceedingJoinPoint call) throws Throwable
+    boolean isProfiling()
     {
-        if (LOGGER.isTraceEnabled())
+        return statistics != null || queryShapeStatistics != null || cacheRegionStatistics != null || flushStatistics != null || profileTransactions ||
+               LOGGER.isTraceEnabled();
+    }
+
+    private long[] startCounting()
+    {
+        if (dataSource != null)
         {
-            final DateTime start = new DateTime();
-            final Object model = call.proceed();
-            logProfileCall(call, model, (new Duration(start, new DateTime()).getMillis()));
-            return model;
+            dataSource.beginCall();
         }
-        else
+
+        if (!countHibernateActivity)
         {
-            return call.proceed();
+            return null;
         }
+
+        final long[] values = counters.get();
+        System.arraycopy(HibernateCounter.threadCounts(), 0, values, 0, HibernateCounter.COUNT);
+        return values;
     }
 
-    public Object profileFindList(final ProceedingJoinPoint call) throws Throwable
+    // turns the counts captured by startCounting into deltas in place
+    private long[] stopCounting(final long[] values)
     {
-        if (LOGGER.isTraceEnabled())
+        if (values != null)
+        {
+            final long[] counts = HibernateCounter.threadCounts();
+
+            for (int i = 0; i < HibernateCounter.COUNT; i++)
+            {
+                values[i] = counts[i] - values[i];
+            }
+        }
+
+        return values;
+    }
+
+    private Object proceed(final ProceedingJoinPoint call, final Object model, final long start, final long[] before) throws Throwable
+    {
+        return proceed(call, null, model, null, start, before);
+    }
+
+    private Object proceed(final ProceedingJoinPoint call, final Object[] args, final Object model, final String cacheRegion, final long start,
+                           final long[] before) throws Throwable
+    {
+        try
+        {
+            return args == null ? call.proceed() : call.proceed(args);
+        }
+        catch (final Throwable t)
+        {
+            recordError(call, model, cacheRegion, ProfilingClock.elapsedSince(start), stopCounting(before), t);
+            throw t;
+        }
+    }
+
+    // lock and optimistic locking failures are often the slowest calls, so they are timed and always written
+    private void recordError(final ProceedingJoinPoint call, final Object model, final String cacheRegion, final long nanos, final long[] counters, final Throwable t)
+    {
+        final ProfiledClass profiledClass = model == null ? resolveFromArguments(call) : registry.lookup(model.getClass());
+
+        if (isEnabled(profiledClass))
+        {
+            final String method = CallSite.of(call).getMethod();
+
+            if (profileTransactions)
+            {
+                final TransactionProfile transaction = TransactionProfile.current(this);
+
+                if (transaction != null)
+                {
+                    transaction.record(method, profiledClass.getEntityName(), nanos);
+                }
+            }
+
+            if (statistics != null)
+            {
+                statistics.recordError(method, profiledClass.getEntityName(), nanos, counters, getConnectionUsage());
+            }
+
+            if (queryShapeStatistics != null)
+            {
+                final String fingerprint = fingerprintOf(call);
+
+                if (fingerprint != null)
+                {
+                    queryShapeStatistics.recordError(method, fingerprint, nanos);
+                }
+            }
+
+            if (cacheRegionStatistics != null && cacheRegion != null)
+            {
+                cacheRegionStatistics.recordError(method, cacheRegion, nanos);
+            }
+
+            if (traceCalls && LOGGER.isTraceEnabled())
+            {
+                final String error = errorName(t);
+                publish(call, profiledClass.getEntityName(), getFailedIdentifier(call, model, profiledClass), nanos, -1L, -1L, counters, error);
+            }
+        }
+    }
+
+    private static String errorName(final Throwable t)
+    {
+        return StringUtils.defaultIfEmpty(t.getClass().getSimpleName(), t.getClass().getName());
+    }
+
+    private String getFailedIdentifier(final ProceedingJoinPoint call, final Object model, final ProfiledClass profiledClass)
+    {
+        if (model != null)
         {
-            final DateTime start = new DateTime();
-            @SuppressWarnings({"unchecked"}) final List<Object> models = (List<Object>) call.proceed();
-            logProfileCall(call, models, (new Duration(start, new DateTime()).getMillis()));
-            return models;
+            try
+            {
+                return profiledClass.getIdentifier(model);
+            }
+            catch (final Exception e)
+            {
+                LOGGER.error("unable to profile class: " + model.getClass());
+            }
         }
         else
         {
-            return call.proceed();
+            // the requested identifier of findById
+            final Object[] args = call.getArgs();
+
+            if (args != null && args.length > 1 && args[1] instanceof String)
+            {
+                return (String) args[1];
+            }
         }
+
+        return "";
+    }
+
+    private static boolean isEnabled(final ProfiledClass profiledClass)
+    {
+        return profiledClass != null && profiledClass.isEnabled();
     }
 
-    private void logProfileCall(final ProceedingJoinPoint call, final Object model, final long duration)
+    private void logProfileCall(final ProceedingJoinPoint call, final Object model, final String cacheRegion, final long nanos, final long[] counters)
     {
         // model is null on login
-        if (model != null && model.getClass().isAnnotationPresent(HibernateProfiled.class))
+        final ProfiledClass resultClass = model == null ? null : registry.lookup(model.getClass());
+
+        if (resultClass != null && !resultClass.isEnabled())
+        {
+            return;
+        }
+
+        // as for lists, results that are not profiled classes fall back to the entity queried
+        record(call, resultClass == null ? resolveFromArguments(call) : resultClass, cacheRegion, nanos, -1L, counters);
+
+        if (resultClass != null && isDetailed(resultClass, nanos))
         {
             try
             {
-                LOGGER.trace(new StringBuilder(StringUtils.substringBefore(call.getSignature().getDeclaringType().getSimpleName(), "$")).append("|").
-                        append(call.getSignature().getName()).append("|").append(getClassNameAndPersistentId(model)).append("|").append(duration));
+                publish(call, resultClass.getEntityName(), resultClass.getIdentifier(model), nanos, -1L, -1L, counters, null);
             }
             catch (final Exception e)
             {
@@ -91,36 +827,334 @@ public final class HibernateProfilingInterceptor
         }
     }
 
-    private void logProfileCall(final ProceedingJoinPoint call, final List<Object> models, final long duration)
+    private void logProfileCall(final ProceedingJoinPoint call, final List<Object> models, final String cacheRegion, final long nanos, final long[] counters)
     {
         if (models != null && !models.isEmpty())
         {
-            LOGGER.trace(new StringBuilder(StringUtils.substringBefore(call.getSignature().getDeclaringType().getSimpleName(), "$")).
-                    append("|").append(call.getSignature().getName()).append("|").append(getClassNameAndPersistentIds(models)).append(duration));
+            final ProfiledClass profiledClass = findProfiledClass(models);
+
+            if (profiledClass != null && !profiledClass.isEnabled())
+            {
+                return;
+            }
+
+            record(call, profiledClass == null ? resolveFromArguments(call) : profiledClass, cacheRegion, nanos, models.size(), counters);
+
+            if (isDetailed(profiledClass, nanos))
+            {
+                final long resultBytes = estimateResultSize && profiledClass != null ? models.size() * profiledClass.getShallowSize() : -1L;
+                publish(call, profiledClass == null ? null : profiledClass.getEntityName(), getPersistentIds(models), nanos, models.size(), resultBytes, counters, null);
+            }
+        }
+        else
+        {
+            record(call, resolveFromArguments(call), cacheRegion, nanos, 0L, counters);
         }
     }
 
-    private String getClassNameAndPersistentId(final Object model) throws InvocationTargetException, NoSuchMethodException, IllegalAccessException
+    private void logProfileBatch(final ProceedingJoinPoint call, final Collection<?> models, final long written, final long nanos, final long[] counters)
     {
-        final String identifier = model.getClass().getAnnotation(HibernateProfiled.class).identifier();
-        return new StringBuilder(model.getClass().getSimpleName()).append("|").append(BeanUtils.getProperty(model, identifier)).toString();
+        final ProfiledClass profiledClass = models == null ? null : findProfiledClass(models);
+
+        if (isEnabled(profiledClass))
+        {
+            record(call, profiledClass, null, nanos, written, counters);
+
+            if (isDetailed(profiledClass, nanos))
+            {
+                publish(call, profiledClass.getEntityName(), getPersistentIds(models), nanos, written, -1L, counters, null);
+            }
+        }
     }
 
-    private String getClassNameAndPersistentIds(final List<Object> models)
+    private void logProfileMultiGet(final ProceedingJoinPoint call, final List<?> models, final long nanos, final long[] counters)
     {
-        final StringBuilder sb = new StringBuilder();
+        final ProfiledClass profiledClass = resolveFromArguments(call);
+
+        if (isEnabled(profiledClass))
+        {
+            final long rows = models == null ? 0L : models.size();
+            record(call, profiledClass, null, nanos, rows, counters);
+
+            if (isDetailed(profiledClass, nanos))
+            {
+                if (models instanceof MultiGetResult)
+                {
+                    final MultiGetResult<?> result = (MultiGetResult<?>) models;
+                    // publish fills in the rest of this thread's event
+                    events.get().setMultiGet(result.getRequested(), result.getSessionHits(), result.getQueries());
+                }
+
+                final long resultBytes = estimateResultSize ? rows * profiledClass.getShallowSize() : -1L;
+                publish(call, profiledClass.getEntityName(), models == null ? "" : getPersistentIds(models), nanos, rows, resultBytes, counters, null);
+            }
+        }
+    }
+
+    private void logProfileScroll(final ProceedingJoinPoint call, final long rows, final long firstRowNanos, final long nanos, final long[] counters)
+    {
+        final ProfiledClass profiledClass = resolveFromArguments(call);
+
+        if (isEnabled(profiledClass))
+        {
+            record(call, profiledClass, null, nanos, rows, counters);
+
+            if (isDetailed(profiledClass, nanos))
+            {
+                // publish fills in the rest of this thread's event
+                events.get().setFirstRowNanos(firstRowNanos);
+                publish(call, profiledClass.getEntityName(), "", nanos, rows, -1L, counters, null);
+            }
+        }
+    }
+
+    private void record(final ProceedingJoinPoint call, final ProfiledClass profiledClass, final String cacheRegion, final long nanos, final long rows,
+                        final long[] counters)
+    {
+        final String method = CallSite.of(call).getMethod();
+
+        if (profileTransactions && (profiledClass == null || profiledClass.isEnabled()))
+        {
+            final TransactionProfile transaction = TransactionProfile.current(this);
+
+            if (transaction != null)
+            {
+                transaction.record(method, profiledClass == null ? "-" : profiledClass.getEntityName(), nanos);
+            }
+        }
+
+        if (isEnabled(profiledClass))
+        {
+            final boolean slow = sampler.isSlow(profiledClass, nanos);
+
+            if (statistics != null)
+            {
+                statistics.record(method, profiledClass.getEntityName(), nanos, slow, rows, counters, getConnectionUsage());
+            }
+
+            if (queryShapeStatistics != null)
+            {
+                final String fingerprint = fingerprintOf(call);
+
+                if (fingerprint != null)
+                {
+                    queryShapeStatistics.record(method, fingerprint, nanos, slow, rows, counters);
+                }
+            }
+
+            if (cacheRegionStatistics != null && cacheRegion != null)
+            {
+                cacheRegionStatistics.record(method, cacheRegion, nanos, slow, rows, counters);
+            }
+        }
+    }
+
+    // usage gathered since startCounting, as profiled calls do not nest
+    private ConnectionUsage getConnectionUsage()
+    {
+        return dataSource == null ? null : dataSource.endCall();
+    }
+
+    private String fingerprintOf(final ProceedingJoinPoint call)
+    {
+        final Object[] args = call.getArgs();
+        return args != null && args.length > 0 && args[0] instanceof DetachedCriteria ? fingerprinter.fingerprint((DetachedCriteria) args[0]) : null;
+    }
+
+    private boolean isDetailed(final ProfiledClass profiledClass, final long nanos)
+    {
+        return traceCalls && LOGGER.isTraceEnabled() && sampler.isSlow(profiledClass, nanos) && sampler.sample(profiledClass);
+    }
+
+    void publishTransaction(final TransactionProfile transaction, final String outcome, final long commitNanos)
+    {
+        final long nanos = transaction.getCallNanos() + commitNanos;
+
+        if (transactionStatistics != null)
+        {
+            transactionStatistics.record(outcome, transaction.getName(), nanos, sampler.isSlow(null, nanos), -1L, null);
+        }
+
+        if (LOGGER.isTraceEnabled())
+        {
+            final ProfileEvent event = events.get();
+            event.setTimestampMillis(System.currentTimeMillis());
+            event.setService("Transaction");
+            event.setMethod(outcome);
+            event.setEntity(transaction.getName());
+            event.setIdentifiers(transaction.getBreakdown());
+            event.setDurationNanos(nanos);
+            event.setCallCount(transaction.getCallCount());
+            event.setCommitNanos(commitNanos);
+
+            try
+            {
+                profileEventHandler.onEvent(event);
+            }
+            finally
+            {
+                event.clear();
+            }
+        }
+    }
+
+    /**
+     * Records a session flush against the writes made on this thread since the previous one, as
+     * <code>Flush|flush|Parent,Child|create:Parent*2,update:Child*1|duration|rows=3 sql=3 ...</code>, rows being those
+     * inserted, updated and deleted; <code>autoFlush</code> when flushed ahead of a query.
+     */
+    void publishFlush(final String method, final long nanos, final long rows, final long[] counters, final Throwable failure)
+    {
+        final PendingWrites writes = pendingWrites.get();
+        final String entities = writes.isEmpty() ? null : writes.getEntities();
+        final String breakdown = writes.getBreakdown();
+        writes.clear();
+
+        if (flushStatistics != null)
+        {
+            if (failure == null)
+            {
+                flushStatistics.record(method, entities == null ? "-" : entities, nanos, sampler.isSlow(null, nanos), rows, counters);
+            }
+            else
+            {
+                flushStatistics.recordError(method, entities == null ? "-" : entities, nanos);
+            }
+        }
+
+        if (traceCalls && LOGGER.isTraceEnabled() && (failure != null || sampler.isSlow(null, nanos)))
+        {
+            final ProfileEvent event = events.get();
+            event.setTimestampMillis(System.currentTimeMillis());
+            event.setService("Flush");
+            event.setMethod(method);
+            event.setEntity(entities);
+            event.setIdentifiers(breakdown);
+            event.setDurationNanos(nanos);
+            event.setRowCount(rows);
+            event.setCounters(counters);
+            event.setError(failure == null ? null : errorName(failure));
+
+            try
+            {
+                profileEventHandler.onEvent(event);
+            }
+            finally
+            {
+                event.clear();
+            }
+        }
+    }
+
+    // resolves the entity for calls that returned nothing from the class or criteria argument
+    private ProfiledClass resolveFromArguments(final ProceedingJoinPoint call)
+    {
+        final Object[] args = call.getArgs();
+        final Object argument = args == null || args.length == 0 ? null : args[0];
+
+        if (argument instanceof Class)
+        {
+            return registry.lookup((Class<?>) argument);
+        }
+
+        if (argument instanceof DetachedCriteria)
+        {
+            final String className = CriteriaInspector.getEntityOrClassName((DetachedCriteria) argument);
+            return className == null ? null : registry.lookup(className);
+        }
+
+        if (argument instanceof Collection)
+        {
+            return findProfiledClass((Collection<?>) argument);
+        }
+
+        return null;
+    }
+
+    private void publish(final ProceedingJoinPoint call, final String entity, final String identifiers, final long nanos, final long rowCount, final long resultBytes,
+                         final long[] counters, final String error)
+    {
+        final ProfileEvent event = events.get();
+        event.setTimestampMillis(System.currentTimeMillis());
+        final CallSite callSite = CallSite.of(call);
+        event.setService(callSite.getService());
+        event.setMethod(callSite.getMethod());
+        event.setEntity(entity);
+        event.setIdentifiers(identifiers);
+        event.setDurationNanos(nanos);
+        event.setError(error);
+        event.setRowCount(rowCount);
+        event.setResultBytes(resultBytes);
+        event.setCounters(counters);
+        event.setConnectionUsage(getConnectionUsage());
+
+        try
+        {
+            profileEventHandler.onEvent(event);
+        }
+        finally
+        {
+            event.clear();
+        }
+    }
+
+    private ProfiledClass findProfiledClass(final Collection<?> models)
+    {
+        Class<?> type = null;
+
         for (final Object model : models)
         {
-            if (model.getClass().isAnnotationPresent(HibernateProfiled.class))
+            // bulk writes skip null entities
+            if (model != null && model.getClass() != type)
             {
-                if (sb.length() == 0)
+                type = model.getClass();
+                final ProfiledClass profiledClass = registry.lookup(type);
+
+                if (profiledClass != null)
                 {
-                    sb.append(model.getClass().getSimpleName()).append("|");
+                    return profiledClass;
                 }
+            }
+        }
+
+        return null;
+    }
+
+    // a sample of at most maxLoggedIdentifiers identifiers so that large results cost no more than small ones
+    private String getPersistentIds(final Collection<?> models)
+    {
+        final StringBuilder sb = new StringBuilder();
+        final int limit = maxLoggedIdentifiers;
+        Class<?> type = null;
+        ProfiledClass profiledClass = null;
+        int logged = 0;
+
+        for (final Object model : models)
+        {
+            if (logged == limit)
+            {
+                sb.append(logged == 0 ? "..." : ",...");
+                break;
+            }
+
+            if (model == null)
+            {
+                continue;
+            }
+
+            // result lists are almost always homogeneous so only look up metadata when the class changes
+            if (model.getClass() != type)
+            {
+                type = model.getClass();
+                profiledClass = registry.lookup(type);
+            }
 
+            if (profiledClass != null)
+            {
                 try
                 {
-                    sb.append(BeanUtils.getProperty(model, model.getClass().getAnnotation(HibernateProfiled.class).identifier())).append("|");
+                    final String identifier = profiledClass.getIdentifier(model);
+                    sb.append(logged++ == 0 ? "" : ",").append(identifier);
                 }
                 catch (final Exception e)
                 {
@@ -131,4 +1165,29 @@ public final class HibernateProfilingInterceptor
 
         return sb.toString();
     }
+
+    // times the first row of a streamed find from the start of the call
+    private static final class FirstRowTimer implements ResultHandler<Object>
+    {
+        private final ResultHandler<Object> handler;
+
+        private long start;
+
+        private long firstRowNanos = -1L;
+
+        private FirstRowTimer(final ResultHandler<Object> handler)
+        {
+            this.handler = handler;
+        }
+
+        @Override public void handle(final Object model)
+        {
+            if (firstRowNanos < 0)
+            {
+                firstRowNanos = ProfilingClock.elapsedSince(start);
+            }
+
+            handler.handle(model);
+        }
+    }
 }
\ No newline at end of file
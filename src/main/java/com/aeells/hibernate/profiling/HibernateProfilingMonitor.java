@@ -0,0 +1,238 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exposes the statistics of a {@link HibernateProfilingInterceptor} over JMX and allows profiling to be switched off
+ * per entity at runtime. {@link #register()} and {@link #unregister()} are intended as Spring <code>init-method</code>
+ * and <code>destroy-method</code>.
+ */
+public final class HibernateProfilingMonitor implements HibernateProfilingMonitorMXBean
+{
+    public static final String DEFAULT_OBJECT_NAME = "com.aeells.hibernate:type=HibernateProfiling";
+
+    private final HibernateProfilingInterceptor interceptor;
+
+    private final MBeanServer mBeanServer;
+
+    private ObjectName objectName;
+
+    public HibernateProfilingMonitor(final HibernateProfilingInterceptor interceptor) throws JMException
+    {
+        this(interceptor, ManagementFactory.getPlatformMBeanServer());
+    }
+
+    public HibernateProfilingMonitor(final HibernateProfilingInterceptor interceptor, final MBeanServer mBeanServer) throws JMException
+    {
+        Validate.notNull(interceptor, "interceptor cannot be null!");
+        Validate.notNull(mBeanServer, "mbean server cannot be null!");
+
+        this.interceptor = interceptor;
+        this.mBeanServer = mBeanServer;
+        this.objectName = new ObjectName(DEFAULT_OBJECT_NAME);
+    }
+
+    public void setObjectName(final String objectName) throws JMException
+    {
+        this.objectName = new ObjectName(objectName);
+    }
+
+    public void register() throws JMException
+    {
+        mBeanServer.registerMBean(this, objectName);
+    }
+
+    public void unregister() throws JMException
+    {
+        if (mBeanServer.isRegistered(objectName))
+        {
+            mBeanServer.unregisterMBean(objectName);
+        }
+    }
+
+    @Override public List<OperationSummary> getOperations()
+    {
+        return summarise(interceptor.getStatistics());
+    }
+
+    @Override public List<OperationSummary> getQueryShapes()
+    {
+        final List<OperationSummary> queryShapes = summarise(interceptor.getQueryShapeStatistics());
+
+        Collections.sort(queryShapes, new Comparator<OperationSummary>()
+        {
+            @Override public int compare(final OperationSummary a, final OperationSummary b)
+            {
+                return Double.compare(b.getTotalMillis(), a.getTotalMillis());
+            }
+        });
+
+        return queryShapes;
+    }
+
+    @Override public List<OperationSummary> getCacheRegions()
+    {
+        return summarise(interceptor.getCacheRegionStatistics());
+    }
+
+    @Override public List<OperationSummary> getTransactions()
+    {
+        return summarise(interceptor.getTransactionStatistics());
+    }
+
+    @Override public List<OperationSummary> getFlushes()
+    {
+        return summarise(interceptor.getFlushStatistics());
+    }
+
+    private static List<OperationSummary> summarise(final ProfilingStatistics statistics)
+    {
+        final List<OperationSummary> operations = new ArrayList<OperationSummary>();
+
+        if (statistics != null)
+        {
+            for (final Map.Entry<String, OperationStatistics> operation : statistics.getOperations().entrySet())
+            {
+                operations.add(new OperationSummary(StringUtils.substringBefore(operation.getKey(), "|"), StringUtils.substringAfter(operation.getKey(), "|"), operation.getValue()));
+            }
+        }
+
+        return operations;
+    }
+
+    @Override public ConnectionPoolSummary getConnectionPool()
+    {
+        final ProfilingDataSource dataSource = interceptor.getDataSource();
+        return dataSource == null ? null : new ConnectionPoolSummary(dataSource);
+    }
+
+    @Override public long getDroppedRecords()
+    {
+        final ProfileEventHandler handler = interceptor.getProfileEventHandler();
+        return handler instanceof ProfileRingBuffer ? ((ProfileRingBuffer) handler).getDroppedCount() : -1L;
+    }
+
+    @Override public long getRecordBacklog()
+    {
+        final ProfileEventHandler handler = interceptor.getProfileEventHandler();
+        return handler instanceof ProfileRingBuffer ? ((ProfileRingBuffer) handler).getBacklog() : -1L;
+    }
+
+    @Override public double getSampleRate()
+    {
+        return interceptor.getSampleRate();
+    }
+
+    @Override public void setSampleRate(final double sampleRate)
+    {
+        interceptor.setSampleRate(sampleRate);
+    }
+
+    @Override public int getMaxSampledPerSecond()
+    {
+        return interceptor.getMaxSampledPerSecond();
+    }
+
+    @Override public void setMaxSampledPerSecond(final int maxSampledPerSecond)
+    {
+        interceptor.setMaxSampledPerSecond(maxSampledPerSecond);
+    }
+
+    @Override public long getSlowCallThresholdMillis()
+    {
+        return interceptor.getSlowCallThresholdMillis();
+    }
+
+    @Override public void setSlowCallThresholdMillis(final long slowCallThresholdMillis)
+    {
+        interceptor.setSlowCallThresholdMillis(slowCallThresholdMillis);
+    }
+
+    @Override public String[] getDisabledEntities()
+    {
+        return interceptor.getRegistry().getDisabledEntities().toArray(new String[0]);
+    }
+
+    @Override public void resetStatistics()
+    {
+        final ProfilingStatistics statistics = interceptor.getStatistics();
+
+        if (statistics != null)
+        {
+            statistics.reset();
+        }
+
+        final ProfilingStatistics queryShapeStatistics = interceptor.getQueryShapeStatistics();
+
+        if (queryShapeStatistics != null)
+        {
+            queryShapeStatistics.reset();
+        }
+
+        final ProfilingStatistics cacheRegionStatistics = interceptor.getCacheRegionStatistics();
+
+        if (cacheRegionStatistics != null)
+        {
+            cacheRegionStatistics.reset();
+        }
+
+        final ProfilingStatistics transactionStatistics = interceptor.getTransactionStatistics();
+
+        if (transactionStatistics != null)
+        {
+            transactionStatistics.reset();
+        }
+
+        final ProfilingStatistics flushStatistics = interceptor.getFlushStatistics();
+
+        if (flushStatistics != null)
+        {
+            flushStatistics.reset();
+        }
+
+        final ProfilingDataSource dataSource = interceptor.getDataSource();
+
+        if (dataSource != null)
+        {
+            dataSource.reset();
+        }
+    }
+
+    @Override public void disableProfiling(final String entity)
+    {
+        Validate.notEmpty(entity, "entity cannot be empty!");
+        interceptor.getRegistry().setEnabled(entity, false);
+    }
+
+    @Override public void enableProfiling(final String entity)
+    {
+        Validate.notEmpty(entity, "entity cannot be empty!");
+        interceptor.getRegistry().setEnabled(entity, true);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import java.util.List;
+
+/**
+ * JMX view and control of a running {@link HibernateProfilingInterceptor}.
+ */
+public interface HibernateProfilingMonitorMXBean
+{
+    /**
+     * @return statistics per <code>method|Entity</code>; empty unless the interceptor has {@link ProfilingStatistics}.
+     */
+    List<OperationSummary> getOperations();
+
+    /**
+     * @return statistics per <code>method|criteria fingerprint</code>, most total time first; empty unless the
+     * interceptor has query shape statistics.
+     */
+    List<OperationSummary> getQueryShapes();
+
+    /**
+     * @return statistics per <code>method|cache region</code> of cacheable finds, with their cache hit ratio; empty
+     * unless the interceptor has cache region statistics.
+     */
+    List<OperationSummary> getCacheRegions();
+
+    /**
+     * @return statistics per <code>outcome|transaction</code>, e.g. <code>commit|OrderService.placeOrder</code>; empty
+     * unless the interceptor has transaction statistics.
+     */
+    List<OperationSummary> getTransactions();
+
+    /**
+     * @return statistics per <code>flush|entities</code> and <code>autoFlush|entities</code>, e.g.
+     * <code>flush|Parent,Child</code>; empty unless the interceptor has flush statistics.
+     */
+    List<OperationSummary> getFlushes();
+
+    /**
+     * @return connection acquisition and hold times and peak concurrency; <code>null</code> unless the interceptor
+     * has a {@link ProfilingDataSource}.
+     */
+    ConnectionPoolSummary getConnectionPool();
+
+    /**
+     * @return records discarded by a full {@link ProfileRingBuffer}; <code>-1</code> when writing synchronously.
+     */
+    long getDroppedRecords();
+
+    /**
+     * @return records waiting to be written by a {@link ProfileRingBuffer}; <code>-1</code> when writing synchronously.
+     */
+    long getRecordBacklog();
+
+    double getSampleRate();
+
+    void setSampleRate(final double sampleRate);
+
+    int getMaxSampledPerSecond();
+
+    void setMaxSampledPerSecond(final int maxSampledPerSecond);
+
+    long getSlowCallThresholdMillis();
+
+    void setSlowCallThresholdMillis(final long slowCallThresholdMillis);
+
+    String[] getDisabledEntities();
+
+    void resetStatistics();
+
+    /**
+     * @param entity simple name of a {@link HibernateProfiled} class, e.g. <code>Parent</code>.
+     */
+    void disableProfiling(final String entity);
+
+    void enableProfiling(final String entity);
+}
\ No newline at end of file
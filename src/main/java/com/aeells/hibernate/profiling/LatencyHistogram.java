@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size, log-linear latency histogram recorded without locks. Values below 16ns are counted exactly and every
+ * power of two above is split into 8 buckets, bounding the reported error to 12.5%; latencies are tracked up to ~18
+ * minutes. The bucket arithmetic is shared with offline analysis of profile logs.
+ */
+public final class LatencyHistogram
+{
+    private static final int LINEAR_BUCKETS = 16;
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final long MAX_TRACKABLE_NANOS = (1L << 40) - 1;
+
+    public static final int BUCKETS = bucketOf(MAX_TRACKABLE_NANOS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong max = new AtomicLong();
+
+    LatencyHistogram()
+    {
+    }
+
+    void record(final long nanos)
+    {
+        counts.incrementAndGet(bucketOf(nanos));
+
+        long current = max.get();
+        while (nanos > current && !max.compareAndSet(current, nanos))
+        {
+            current = max.get();
+        }
+    }
+
+    void addTo(final long[] target)
+    {
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            target[i] += counts.get(i);
+        }
+    }
+
+    long getMax()
+    {
+        return max.get();
+    }
+
+    void reset()
+    {
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            counts.set(i, 0L);
+        }
+        max.set(0L);
+    }
+
+    public static int bucketOf(final long nanos)
+    {
+        final long value = nanos < 0 ? 0 : Math.min(nanos, MAX_TRACKABLE_NANOS);
+
+        if (value < LINEAR_BUCKETS)
+        {
+            return (int) value;
+        }
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+    }
+
+    public static long upperBoundOf(final int bucket)
+    {
+        if (bucket < LINEAR_BUCKETS)
+        {
+            return bucket;
+        }
+
+        final int exponent = 4 + (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+        final int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return ((long) (SUB_BUCKETS + subBucket) << shift) + (1L << shift) - 1;
+    }
+
+    /**
+     * @return the smallest bucket bound covering <code>percentile</code> of <code>counts</code>, never above <code>max</code>.
+     */
+    public static long percentile(final long[] counts, final long total, final double percentile, final long max)
+    {
+        if (total == 0)
+        {
+            return 0L;
+        }
+
+        final long rank = Math.max(1L, (long) Math.ceil(percentile * total));
+        long cumulative = 0;
+
+        for (int i = 0; i < counts.length; i++)
+        {
+            cumulative += counts[i];
+
+            if (cumulative >= rank)
+            {
+                return Math.min(upperBoundOf(i), max);
+            }
+        }
+
+        return max;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+/**
+ * Immutable latency percentiles, in nanoseconds, taken from a {@link RollingLatencyHistogram}.
+ */
+public final class LatencySnapshot
+{
+    private final long count;
+
+    private final long p50;
+
+    private final long p95;
+
+    private final long p99;
+
+    private final long max;
+
+    LatencySnapshot(final long[] counts, final long max)
+    {
+        long total = 0;
+        for (final long count : counts)
+        {
+            total += count;
+        }
+
+        this.count = total;
+        this.p50 = LatencyHistogram.percentile(counts, total, 0.50, max);
+        this.p95 = LatencyHistogram.percentile(counts, total, 0.95, max);
+        this.p99 = LatencyHistogram.percentile(counts, total, 0.99, max);
+        this.max = max;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    public long getP50()
+    {
+        return p50;
+    }
+
+    public long getP95()
+    {
+        return p95;
+    }
+
+    public long getP99()
+    {
+        return p99;
+    }
+
+    public long getMax()
+    {
+        return max;
+    }
+
+    @Override public String toString()
+    {
+        final StringBuilder sb = new StringBuilder("count=").append(count);
+        ProfilingClock.appendMillis(sb.append(" p50="), p50);
+        ProfilingClock.appendMillis(sb.append(" p95="), p95);
+        ProfilingClock.appendMillis(sb.append(" p99="), p99);
+        return ProfilingClock.appendMillis(sb.append(" max="), max).toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,317 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Live statistics for one <code>HibernateService</code> method against one profiled entity, e.g.
+ * <code>findUnique|Parent</code>: totals since the last reset plus a rolling latency distribution.
+ */
+public final class OperationStatistics
+{
+    private final AtomicLong calls = new AtomicLong();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    private final AtomicLong errorNanos = new AtomicLong();
+
+    private final AtomicLong maxErrorNanos = new AtomicLong();
+
+    private final AtomicLong slowCalls = new AtomicLong();
+
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    private final AtomicLong listCalls = new AtomicLong();
+
+    private final AtomicLong totalRows = new AtomicLong();
+
+    private final AtomicLong maxRows = new AtomicLong();
+
+    private final AtomicLong countedCalls = new AtomicLong();
+
+    private final AtomicLong connectionCalls = new AtomicLong();
+
+    private final AtomicLong acquireNanos = new AtomicLong();
+
+    private final AtomicLong maxAcquireNanos = new AtomicLong();
+
+    private final AtomicLong heldNanos = new AtomicLong();
+
+    private final AtomicLong maxWaiting = new AtomicLong();
+
+    private final AtomicLongArray counterTotals = new AtomicLongArray(HibernateCounter.COUNT);
+
+    private final RollingLatencyHistogram window;
+
+    OperationStatistics(final long intervalNanos, final int intervalCount)
+    {
+        this.window = new RollingLatencyHistogram(intervalNanos, intervalCount);
+    }
+
+    void record(final long nanos, final boolean slow, final long rows, final long[] counters, final ConnectionUsage connection)
+    {
+        recordConnection(connection);
+        record(nanos, slow, rows, counters);
+    }
+
+    void record(final long nanos, final boolean slow, final long rows, final long[] counters)
+    {
+        if (rows >= 0)
+        {
+            listCalls.incrementAndGet();
+            totalRows.addAndGet(rows);
+            updateMax(maxRows, rows);
+        }
+
+        recordCounters(counters);
+        record(nanos, slow);
+    }
+
+    private void recordConnection(final ConnectionUsage connection)
+    {
+        if (connection != null && connection.isUsed())
+        {
+            connectionCalls.incrementAndGet();
+            acquireNanos.addAndGet(connection.getAcquireNanos());
+            updateMax(maxAcquireNanos, connection.getAcquireNanos());
+            heldNanos.addAndGet(connection.getHeldNanos());
+            updateMax(maxWaiting, connection.getWaiting());
+        }
+    }
+
+    private void recordCounters(final long[] counters)
+    {
+        if (counters != null)
+        {
+            countedCalls.incrementAndGet();
+
+            for (int i = 0; i < counters.length; i++)
+            {
+                counterTotals.addAndGet(i, counters[i]);
+            }
+        }
+    }
+
+    void record(final long nanos, final boolean slow)
+    {
+        calls.incrementAndGet();
+
+        if (slow)
+        {
+            slowCalls.incrementAndGet();
+        }
+
+        totalNanos.addAndGet(nanos);
+        updateMax(maxNanos, nanos);
+        window.record(nanos);
+    }
+
+    private static void updateMax(final AtomicLong max, final long value)
+    {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value))
+        {
+            current = max.get();
+        }
+    }
+
+    // lock waits and timeouts are where connection use and Hibernate activity matter most
+    void recordError(final long nanos, final long[] counters, final ConnectionUsage connection)
+    {
+        recordConnection(connection);
+        recordCounters(counters);
+        recordError(nanos);
+    }
+
+    // failed calls are kept out of the latency distribution of successful ones
+    void recordError(final long nanos)
+    {
+        errors.incrementAndGet();
+
+        if (nanos >= 0)
+        {
+            errorNanos.addAndGet(nanos);
+            updateMax(maxErrorNanos, nanos);
+        }
+    }
+
+    public long getCalls()
+    {
+        return calls.get();
+    }
+
+    public long getErrors()
+    {
+        return errors.get();
+    }
+
+    /**
+     * @return time spent in failed calls, e.g. waiting on locks before timing out.
+     */
+    public long getErrorNanos()
+    {
+        return errorNanos.get();
+    }
+
+    public long getMaxErrorNanos()
+    {
+        return maxErrorNanos.get();
+    }
+
+    /**
+     * @return calls at or above the slow call threshold in force when they were made.
+     */
+    public long getSlowCalls()
+    {
+        return slowCalls.get();
+    }
+
+    public long getTotalNanos()
+    {
+        return totalNanos.get();
+    }
+
+    public long getMaxNanos()
+    {
+        return maxNanos.get();
+    }
+
+    /**
+     * @return calls returning lists, whose rows are counted.
+     */
+    public long getListCalls()
+    {
+        return listCalls.get();
+    }
+
+    public long getTotalRows()
+    {
+        return totalRows.get();
+    }
+
+    public long getMaxRows()
+    {
+        return maxRows.get();
+    }
+
+    /**
+     * @return calls for which {@link HibernateCounter} deltas were captured.
+     */
+    public long getCountedCalls()
+    {
+        return countedCalls.get();
+    }
+
+    public long getCounterTotal(final HibernateCounter counter)
+    {
+        return counterTotals.get(counter.ordinal());
+    }
+
+    /**
+     * @return calls which acquired or released a connection from a {@link ProfilingDataSource}.
+     */
+    public long getConnectionCalls()
+    {
+        return connectionCalls.get();
+    }
+
+    public long getAcquireNanos()
+    {
+        return acquireNanos.get();
+    }
+
+    public long getMaxAcquireNanos()
+    {
+        return maxAcquireNanos.get();
+    }
+
+    public long getHeldNanos()
+    {
+        return heldNanos.get();
+    }
+
+    /**
+     * @return most callers already waiting for a connection when one of these calls asked for one.
+     */
+    public long getMaxWaiting()
+    {
+        return maxWaiting.get();
+    }
+
+    /**
+     * @return percentiles over the rolling window only.
+     */
+    public LatencySnapshot getWindow()
+    {
+        return window.snapshot();
+    }
+
+    public long getWindowNanos()
+    {
+        return window.getWindowNanos();
+    }
+
+    void reset()
+    {
+        calls.set(0L);
+        errors.set(0L);
+        errorNanos.set(0L);
+        maxErrorNanos.set(0L);
+        slowCalls.set(0L);
+        totalNanos.set(0L);
+        maxNanos.set(0L);
+        listCalls.set(0L);
+        totalRows.set(0L);
+        maxRows.set(0L);
+        countedCalls.set(0L);
+        connectionCalls.set(0L);
+        acquireNanos.set(0L);
+        maxAcquireNanos.set(0L);
+        heldNanos.set(0L);
+        maxWaiting.set(0L);
+
+        for (int i = 0; i < HibernateCounter.COUNT; i++)
+        {
+            counterTotals.set(i, 0L);
+        }
+
+        window.reset();
+    }
+
+    @Override public String toString()
+    {
+        final StringBuilder sb = new StringBuilder("calls=").append(getCalls()).append(" errors=").append(getErrors());
+        ProfilingClock.appendMillis(sb.append(" errorTotal="), getErrorNanos());
+        sb.append(" slow=").append(getSlowCalls());
+        ProfilingClock.appendMillis(sb.append(" total="), getTotalNanos());
+        ProfilingClock.appendMillis(sb.append(" max="), getMaxNanos());
+        sb.append(" rows=").append(getTotalRows()).append(" maxRows=").append(getMaxRows());
+        ProfilingClock.appendMillis(sb.append(" acquire="), getAcquireNanos());
+        ProfilingClock.appendMillis(sb.append(" held="), getHeldNanos());
+        sb.append(" maxWaiting=").append(getMaxWaiting());
+
+        for (final HibernateCounter counter : HibernateCounter.values())
+        {
+            sb.append(' ').append(counter.getLabel()).append('=').append(getCounterTotal(counter));
+        }
+
+        return sb.append(" window[").append(getWindow()).append("]").toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+/**
+ * Point in time copy of an {@link OperationStatistics}, in milliseconds, as exposed over JMX.
+ */
+public final class OperationSummary
+{
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    private final String method;
+
+    private final String entity;
+
+    private final long calls;
+
+    private final long errors;
+
+    private final double errorMillis;
+
+    private final double maxErrorMillis;
+
+    private final long slowCalls;
+
+    private final double totalMillis;
+
+    private final double maxMillis;
+
+    private final long listCalls;
+
+    private final long totalRows;
+
+    private final long maxRows;
+
+    private final long countedCalls;
+
+    private final long connectionCalls;
+
+    private final double acquireMillis;
+
+    private final double maxAcquireMillis;
+
+    private final double heldMillis;
+
+    private final long maxWaiting;
+
+    private final long[] counterTotals = new long[HibernateCounter.COUNT];
+
+    private final LatencySnapshot window;
+
+    OperationSummary(final String method, final String entity, final OperationStatistics statistics)
+    {
+        this.method = method;
+        this.entity = entity;
+        this.calls = statistics.getCalls();
+        this.errors = statistics.getErrors();
+        this.errorMillis = statistics.getErrorNanos() / NANOS_PER_MILLI;
+        this.maxErrorMillis = statistics.getMaxErrorNanos() / NANOS_PER_MILLI;
+        this.slowCalls = statistics.getSlowCalls();
+        this.totalMillis = statistics.getTotalNanos() / NANOS_PER_MILLI;
+        this.maxMillis = statistics.getMaxNanos() / NANOS_PER_MILLI;
+        this.listCalls = statistics.getListCalls();
+        this.totalRows = statistics.getTotalRows();
+        this.maxRows = statistics.getMaxRows();
+        this.countedCalls = statistics.getCountedCalls();
+        this.connectionCalls = statistics.getConnectionCalls();
+        this.acquireMillis = statistics.getAcquireNanos() / NANOS_PER_MILLI;
+        this.maxAcquireMillis = statistics.getMaxAcquireNanos() / NANOS_PER_MILLI;
+        this.heldMillis = statistics.getHeldNanos() / NANOS_PER_MILLI;
+        this.maxWaiting = statistics.getMaxWaiting();
+        this.window = statistics.getWindow();
+
+        for (final HibernateCounter counter : HibernateCounter.values())
+        {
+            counterTotals[counter.ordinal()] = statistics.getCounterTotal(counter);
+        }
+    }
+
+    public String getMethod()
+    {
+        return method;
+    }
+
+    public String getEntity()
+    {
+        return entity;
+    }
+
+    public long getCalls()
+    {
+        return calls;
+    }
+
+    public long getErrors()
+    {
+        return errors;
+    }
+
+    public double getErrorMillis()
+    {
+        return errorMillis;
+    }
+
+    public double getMeanErrorMillis()
+    {
+        return errors == 0 ? 0d : errorMillis / errors;
+    }
+
+    public double getMaxErrorMillis()
+    {
+        return maxErrorMillis;
+    }
+
+    public long getSlowCalls()
+    {
+        return slowCalls;
+    }
+
+    public double getTotalMillis()
+    {
+        return totalMillis;
+    }
+
+    public double getMeanMillis()
+    {
+        return calls == 0 ? 0d : totalMillis / calls;
+    }
+
+    public double getMaxMillis()
+    {
+        return maxMillis;
+    }
+
+    public double getMeanRows()
+    {
+        return listCalls == 0 ? 0d : (double) totalRows / listCalls;
+    }
+
+    public long getMaxRows()
+    {
+        return maxRows;
+    }
+
+    public double getMeanStatements()
+    {
+        return mean(HibernateCounter.STATEMENTS);
+    }
+
+    public double getMeanEntityLoads()
+    {
+        return mean(HibernateCounter.ENTITY_LOADS);
+    }
+
+    public double getMeanEntityFetches()
+    {
+        return mean(HibernateCounter.ENTITY_FETCHES);
+    }
+
+    public double getMeanCollectionLoads()
+    {
+        return mean(HibernateCounter.COLLECTION_LOADS);
+    }
+
+    public long getCacheHits()
+    {
+        return counterTotals[HibernateCounter.CACHE_HITS.ordinal()];
+    }
+
+    public long getCacheMisses()
+    {
+        return counterTotals[HibernateCounter.CACHE_MISSES.ordinal()];
+    }
+
+    public long getQueryCacheHits()
+    {
+        return counterTotals[HibernateCounter.QUERY_CACHE_HITS.ordinal()];
+    }
+
+    public long getQueryCacheMisses()
+    {
+        return counterTotals[HibernateCounter.QUERY_CACHE_MISSES.ordinal()];
+    }
+
+    /**
+     * @return second level and query cache hits over lookups; <code>0</code> without lookups.
+     */
+    public double getCacheHitRatio()
+    {
+        final long hits = getCacheHits() + getQueryCacheHits();
+        final long lookups = hits + getCacheMisses() + getQueryCacheMisses();
+        return lookups == 0 ? 0d : (double) hits / lookups;
+    }
+
+    public double getMeanAcquireMillis()
+    {
+        return connectionCalls == 0 ? 0d : acquireMillis / connectionCalls;
+    }
+
+    public double getMaxAcquireMillis()
+    {
+        return maxAcquireMillis;
+    }
+
+    public double getMeanHeldMillis()
+    {
+        return connectionCalls == 0 ? 0d : heldMillis / connectionCalls;
+    }
+
+    public long getMaxWaiting()
+    {
+        return maxWaiting;
+    }
+
+    public long getWindowCalls()
+    {
+        return window.getCount();
+    }
+
+    public double getWindowP50Millis()
+    {
+        return window.getP50() / NANOS_PER_MILLI;
+    }
+
+    public double getWindowP95Millis()
+    {
+        return window.getP95() / NANOS_PER_MILLI;
+    }
+
+    public double getWindowP99Millis()
+    {
+        return window.getP99() / NANOS_PER_MILLI;
+    }
+
+    public double getWindowMaxMillis()
+    {
+        return window.getMax() / NANOS_PER_MILLI;
+    }
+
+    private double mean(final HibernateCounter counter)
+    {
+        return countedCalls == 0 ? 0d : (double) counterTotals[counter.ordinal()] / countedCalls;
+    }
+}
\ No newline at end of file
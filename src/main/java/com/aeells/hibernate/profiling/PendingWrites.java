@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+// profiled writes made on one thread since its last flush, to which the flush is attributed; bounded by the number of
+// distinct operations rather than calls. Writes still pending when a Spring managed transaction completes, as on
+// rollback, are never flushed and so are dropped. A bulk write flushes several times within its call, so it stays
+// pending until the call returns and each of those flushes is attributed to it.
+final class PendingWrites extends TransactionSynchronizationAdapter
+{
+    private final Map<String, int[]> writes = new LinkedHashMap<String, int[]>();
+
+    private final Set<String> entities = new LinkedHashSet<String>();
+
+    private String batchMethod;
+
+    private String batchEntity;
+
+    private int batchSize;
+
+    void add(final String method, final String entity)
+    {
+        add(method, entity, 1);
+    }
+
+    void beginBatch(final String method, final String entity, final int size)
+    {
+        add(method, entity, size);
+        batchMethod = method;
+        batchEntity = entity;
+        batchSize = size;
+    }
+
+    // the batch's last writes are still pending until flushed after the call
+    void endBatch()
+    {
+        batchMethod = null;
+        batchEntity = null;
+    }
+
+    private void add(final String method, final String entity, final int count)
+    {
+        if (writes.isEmpty() && TransactionSynchronizationManager.isSynchronizationActive() &&
+            !TransactionSynchronizationManager.getSynchronizations().contains(this))
+        {
+            TransactionSynchronizationManager.registerSynchronization(this);
+        }
+
+        final String key = method + ":" + entity;
+        final int[] counted = writes.get(key);
+
+        if (counted == null)
+        {
+            writes.put(key, new int[]{count});
+        }
+        else
+        {
+            counted[0] += count;
+        }
+
+        entities.add(entity);
+    }
+
+    boolean isEmpty()
+    {
+        return writes.isEmpty();
+    }
+
+    /**
+     * @return written entities in order of first write, e.g. <code>Parent,Child</code>.
+     */
+    String getEntities()
+    {
+        final StringBuilder sb = new StringBuilder();
+
+        for (final String entity : entities)
+        {
+            sb.append(sb.length() == 0 ? "" : ",").append(entity);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * @return writes per <code>method:Entity</code>, e.g. <code>create:Parent*2,update:Child*1</code>.
+     */
+    String getBreakdown()
+    {
+        final StringBuilder sb = new StringBuilder();
+
+        for (final Map.Entry<String, int[]> write : writes.entrySet())
+        {
+            sb.append(sb.length() == 0 ? "" : ",").append(write.getKey()).append('*').append(write.getValue()[0]);
+        }
+
+        return sb.toString();
+    }
+
+    void clear()
+    {
+        writes.clear();
+        entities.clear();
+
+        if (batchMethod != null)
+        {
+            add(batchMethod, batchEntity, batchSize);
+        }
+    }
+
+    @Override public void afterCompletion(final int status)
+    {
+        clear();
+    }
+}
\ No newline at end of file
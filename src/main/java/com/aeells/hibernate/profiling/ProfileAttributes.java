@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+/**
+ * The optional last field of a text profile record: space separated <code>name=value</code> pairs for the exception
+ * type of a failed call, the row count, approximate size and time to the first row of list results, the identifiers
+ * requested, session hits and queries of a multi-get, the call count and commit time of transaction summaries,
+ * connection acquisition and hold times with the callers already waiting for a connection and the
+ * {@link HibernateCounter} deltas, e.g.
+ * <code>rows=50000 bytes=2400000 sql=1 load=50000 fetch=0 coll=0 hit=0 miss=0 qhit=0 qmiss=0</code> or
+ * <code>error=CannotAcquireLockException sql=1 load=0 fetch=0 coll=0 hit=0 miss=0 qhit=0 qmiss=0</code>.
+ */
+final class ProfileAttributes
+{
+    static final String ERROR = "error";
+
+    static final String ROWS = "rows";
+
+    static final String BYTES = "bytes";
+
+    static final String FIRST_ROW_NANOS = "firstRowNanos";
+
+    static final String REQUESTED = "requested";
+
+    static final String SESSION_HITS = "sessionHits";
+
+    static final String QUERIES = "queries";
+
+    static final String CALLS = "calls";
+
+    static final String COMMIT_NANOS = "commitNanos";
+
+    static final String ACQUIRE_NANOS = "acquireNanos";
+
+    static final String HELD_NANOS = "heldNanos";
+
+    static final String WAITING = "waiting";
+
+    private ProfileAttributes()
+    {
+    }
+
+    static boolean isAttributes(final String field)
+    {
+        return field.indexOf('=') > 0;
+    }
+
+    /**
+     * @param error exception type of a failed call; <code>null</code> when successful.
+     * @param rowCount negative when not a list result.
+     * @param resultBytes negative when not estimated.
+     * @param firstRowNanos negative unless a streamed result.
+     * @param requested negative unless a multi-get, along with the session hits and queries.
+     * @param callCount negative unless a transaction summary.
+     * @param commitNanos negative unless a transaction summary.
+     * @param acquireNanos negative unless the call acquired or released a connection, along with the hold time and waiting callers.
+     * @param counters <code>null</code> when not captured.
+     */
+    static StringBuilder appendTo(final StringBuilder sb, final String error, final long rowCount, final long resultBytes, final long firstRowNanos,
+                                  final long requested, final long sessionHits, final long queries, final long callCount, final long commitNanos,
+                                  final long acquireNanos, final long heldNanos, final long waiting, final long[] counters)
+    {
+        final int start = sb.length();
+
+        if (error != null)
+        {
+            sb.append('|').append(ERROR).append('=').append(error);
+        }
+
+        if (rowCount >= 0)
+        {
+            append(sb, start, ROWS, rowCount);
+
+            if (resultBytes >= 0)
+            {
+                append(sb, start, BYTES, resultBytes);
+            }
+        }
+
+        if (firstRowNanos >= 0)
+        {
+            append(sb, start, FIRST_ROW_NANOS, firstRowNanos);
+        }
+
+        if (requested >= 0)
+        {
+            append(sb, start, REQUESTED, requested);
+            append(sb, start, SESSION_HITS, sessionHits);
+            append(sb, start, QUERIES, queries);
+        }
+
+        if (callCount >= 0)
+        {
+            append(sb, start, CALLS, callCount);
+        }
+
+        if (commitNanos >= 0)
+        {
+            append(sb, start, COMMIT_NANOS, commitNanos);
+        }
+
+        if (acquireNanos >= 0)
+        {
+            append(sb, start, ACQUIRE_NANOS, acquireNanos);
+            append(sb, start, HELD_NANOS, heldNanos);
+            append(sb, start, WAITING, waiting);
+        }
+
+        if (counters != null)
+        {
+            for (final HibernateCounter counter : HibernateCounter.VALUES)
+            {
+                append(sb, start, counter.getLabel(), counters[counter.ordinal()]);
+            }
+        }
+
+        return sb;
+    }
+
+    private static void append(final StringBuilder sb, final int start, final String name, final long value)
+    {
+        sb.append(sb.length() == start ? '|' : ' ').append(name).append('=').append(value);
+    }
+}
\ No newline at end of file
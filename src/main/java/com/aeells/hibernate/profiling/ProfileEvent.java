@@ -0,0 +1,362 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+/**
+ * A single profiled call. Instances are preallocated and reused, so handlers must copy anything they need to keep
+ * beyond {@link ProfileEventHandler#onEvent(ProfileEvent)}.
+ */
+public final class ProfileEvent
+{
+    private long timestampMillis;
+
+    private String service;
+
+    private String method;
+
+    private String entity;
+
+    private String identifiers;
+
+    private long durationNanos;
+
+    private String error;
+
+    private long rowCount = -1L;
+
+    private long resultBytes = -1L;
+
+    private long firstRowNanos = -1L;
+
+    private long requested = -1L;
+
+    private long sessionHits = -1L;
+
+    private long queries = -1L;
+
+    private long callCount = -1L;
+
+    private long commitNanos = -1L;
+
+    private long acquireNanos = -1L;
+
+    private long heldNanos = -1L;
+
+    private long waiting = -1L;
+
+    private final long[] counters = new long[HibernateCounter.COUNT];
+
+    private boolean counted;
+
+    void setTimestampMillis(final long timestampMillis)
+    {
+        this.timestampMillis = timestampMillis;
+    }
+
+    void setService(final String service)
+    {
+        this.service = service;
+    }
+
+    void setMethod(final String method)
+    {
+        this.method = method;
+    }
+
+    void setEntity(final String entity)
+    {
+        this.entity = entity;
+    }
+
+    void setIdentifiers(final String identifiers)
+    {
+        this.identifiers = identifiers;
+    }
+
+    void setDurationNanos(final long durationNanos)
+    {
+        this.durationNanos = durationNanos;
+    }
+
+    void setError(final String error)
+    {
+        this.error = error;
+    }
+
+    void setRowCount(final long rowCount)
+    {
+        this.rowCount = rowCount;
+    }
+
+    void setResultBytes(final long resultBytes)
+    {
+        this.resultBytes = resultBytes;
+    }
+
+    void setFirstRowNanos(final long firstRowNanos)
+    {
+        this.firstRowNanos = firstRowNanos;
+    }
+
+    void setMultiGet(final long requested, final long sessionHits, final long queries)
+    {
+        this.requested = requested;
+        this.sessionHits = sessionHits;
+        this.queries = queries;
+    }
+
+    void setCallCount(final long callCount)
+    {
+        this.callCount = callCount;
+    }
+
+    void setCommitNanos(final long commitNanos)
+    {
+        this.commitNanos = commitNanos;
+    }
+
+    void setConnectionUsage(final ConnectionUsage usage)
+    {
+        final boolean used = usage != null && usage.isUsed();
+        acquireNanos = used ? usage.getAcquireNanos() : -1L;
+        heldNanos = used ? usage.getHeldNanos() : -1L;
+        waiting = used ? usage.getWaiting() : -1L;
+    }
+
+    void setCounters(final long[] counters)
+    {
+        counted = counters != null;
+
+        if (counted)
+        {
+            System.arraycopy(counters, 0, this.counters, 0, HibernateCounter.COUNT);
+        }
+    }
+
+    void copyFrom(final ProfileEvent event)
+    {
+        timestampMillis = event.timestampMillis;
+        service = event.service;
+        method = event.method;
+        entity = event.entity;
+        identifiers = event.identifiers;
+        durationNanos = event.durationNanos;
+        error = event.error;
+        rowCount = event.rowCount;
+        resultBytes = event.resultBytes;
+        firstRowNanos = event.firstRowNanos;
+        requested = event.requested;
+        sessionHits = event.sessionHits;
+        queries = event.queries;
+        callCount = event.callCount;
+        commitNanos = event.commitNanos;
+        acquireNanos = event.acquireNanos;
+        heldNanos = event.heldNanos;
+        waiting = event.waiting;
+        setCounters(event.counted ? event.counters : null);
+    }
+
+    void clear()
+    {
+        timestampMillis = 0L;
+        service = null;
+        method = null;
+        entity = null;
+        identifiers = null;
+        durationNanos = 0L;
+        error = null;
+        rowCount = -1L;
+        resultBytes = -1L;
+        firstRowNanos = -1L;
+        requested = -1L;
+        sessionHits = -1L;
+        queries = -1L;
+        callCount = -1L;
+        commitNanos = -1L;
+        acquireNanos = -1L;
+        heldNanos = -1L;
+        waiting = -1L;
+        counted = false;
+    }
+
+    /**
+     * @return wall clock time the call completed.
+     */
+    public long getTimestampMillis()
+    {
+        return timestampMillis;
+    }
+
+    public String getService()
+    {
+        return service;
+    }
+
+    public String getMethod()
+    {
+        return method;
+    }
+
+    /**
+     * @return the simple name of the profiled persistent class; <code>null</code> when a list contained no profiled rows.
+     */
+    public String getEntity()
+    {
+        return entity;
+    }
+
+    /**
+     * @return the persistent identifier or, for lists, a sample of identifiers separated by <code>,</code> and
+     * followed by <code>...</code> when there were more rows.
+     */
+    public String getIdentifiers()
+    {
+        return identifiers;
+    }
+
+    public long getDurationNanos()
+    {
+        return durationNanos;
+    }
+
+    /**
+     * @return simple name of the exception thrown by a failed call; <code>null</code> when successful.
+     */
+    public String getError()
+    {
+        return error;
+    }
+
+    /**
+     * @return rows in a list result; negative for single results.
+     */
+    public long getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * @return approximate shallow size of a list result; negative when not estimated.
+     */
+    public long getResultBytes()
+    {
+        return resultBytes;
+    }
+
+    /**
+     * @return time from the start of a streamed result to its first row; negative unless streamed.
+     */
+    public long getFirstRowNanos()
+    {
+        return firstRowNanos;
+    }
+
+    /**
+     * @return distinct identifiers requested of a multi-get, along with those found in the session and the queries
+     * issued for the rest; negative unless a multi-get.
+     */
+    public long getRequested()
+    {
+        return requested;
+    }
+
+    public long getSessionHits()
+    {
+        return sessionHits;
+    }
+
+    public long getQueries()
+    {
+        return queries;
+    }
+
+    /**
+     * @return profiled calls rolled up into a transaction summary; negative for single calls.
+     */
+    public long getCallCount()
+    {
+        return callCount;
+    }
+
+    /**
+     * @return time spent flushing and committing or rolling back a summarised transaction; negative for single calls.
+     */
+    public long getCommitNanos()
+    {
+        return commitNanos;
+    }
+
+    /**
+     * @return time spent acquiring connections from a {@link ProfilingDataSource} during the call; negative when the
+     * call neither acquired nor released one.
+     */
+    public long getAcquireNanos()
+    {
+        return acquireNanos;
+    }
+
+    /**
+     * @return time connections released during the call had been held; negative as {@link #getAcquireNanos()}.
+     */
+    public long getHeldNanos()
+    {
+        return heldNanos;
+    }
+
+    /**
+     * @return callers already waiting for a connection when the call asked for one; negative as {@link #getAcquireNanos()}.
+     */
+    public long getWaiting()
+    {
+        return waiting;
+    }
+
+    /**
+     * @return whether Hibernate statistics deltas were captured for this call.
+     */
+    public boolean hasCounters()
+    {
+        return counted;
+    }
+
+    public long getCounter(final HibernateCounter counter)
+    {
+        return counted ? counters[counter.ordinal()] : 0L;
+    }
+
+    /**
+     * Appends the <code>Service|method|Entity|id|duration</code> profile record, followed by the
+     * {@link ProfileAttributes} when any were captured.
+     */
+    public StringBuilder appendTo(final StringBuilder sb)
+    {
+        sb.append(service).append('|').append(method).append('|');
+
+        if (entity != null)
+        {
+            sb.append(entity).append('|').append(identifiers).append('|');
+        }
+
+        ProfilingClock.appendMillis(sb, durationNanos);
+        return ProfileAttributes.appendTo(sb, error, rowCount, resultBytes, firstRowNanos, requested, sessionHits, queries, callCount, commitNanos, acquireNanos,
+                                          heldNanos, waiting, counted ? counters : null);
+    }
+
+    @Override public String toString()
+    {
+        return appendTo(new StringBuilder()).toString();
+    }
+}
\ No newline at end of file
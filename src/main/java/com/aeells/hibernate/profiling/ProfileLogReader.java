@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Reads back the text records written by {@link ProfileLogWriter}, in the form <code>Service|method|Entity|id|duration</code>
+ * optionally preceded by an ISO8601 timestamp as in the recommended log4j layout and followed by {@link ProfileAttributes}. Whole millisecond durations written
+ * by earlier versions are read too; lines that are not profile records are skipped.
+ */
+public final class ProfileLogReader implements ProfileRecordReader
+{
+    private static final String TIMESTAMP_PATTERN = "yyyy-MM-dd HH:mm:ss,SSS";
+
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    private final BufferedReader reader;
+
+    private final SimpleDateFormat timestampFormat = new SimpleDateFormat(TIMESTAMP_PATTERN);
+
+    public ProfileLogReader(final Reader reader)
+    {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader, 64 * 1024);
+    }
+
+    @Override public ProfileRecord next() throws IOException
+    {
+        String line;
+
+        while ((line = reader.readLine()) != null)
+        {
+            final ProfileRecord record = parse(line);
+
+            if (record != null)
+            {
+                return record;
+            }
+        }
+
+        return null;
+    }
+
+    @Override public void close() throws IOException
+    {
+        reader.close();
+    }
+
+    ProfileRecord parse(final String line)
+    {
+        long timestamp = 0L;
+        int start = 0;
+
+        if (line.length() > TIMESTAMP_PATTERN.length() && line.charAt(TIMESTAMP_PATTERN.length()) == ' ')
+        {
+            final Date date = timestampFormat.parse(line, new ParsePosition(0));
+
+            if (date != null)
+            {
+                timestamp = date.getTime();
+                start = TIMESTAMP_PATTERN.length() + 1;
+            }
+        }
+
+        final String[] fields = line.substring(start).split("\\|", -1);
+        final boolean hasAttributes = ProfileAttributes.isAttributes(fields[fields.length - 1]);
+        final int length = hasAttributes ? fields.length - 1 : fields.length;
+
+        if (length < 3)
+        {
+            return null;
+        }
+
+        final long duration;
+        long rowCount = -1L;
+        long resultBytes = -1L;
+        long firstRowNanos = -1L;
+        long requested = -1L;
+        long sessionHits = -1L;
+        long queries = -1L;
+        long callCount = -1L;
+        long commitNanos = -1L;
+        long acquireNanos = -1L;
+        long heldNanos = -1L;
+        long waiting = -1L;
+        long[] counters = null;
+        String error = null;
+
+        try
+        {
+            duration = Math.round(Double.parseDouble(fields[length - 1]) * NANOS_PER_MILLI);
+
+            if (hasAttributes)
+            {
+                for (final String attribute : fields[length].split(" "))
+                {
+                    final String name = attribute.substring(0, Math.max(0, attribute.indexOf('=')));
+
+                    if (ProfileAttributes.ERROR.equals(name))
+                    {
+                        error = attribute.substring(name.length() + 1);
+                        continue;
+                    }
+
+                    final long value = Long.parseLong(attribute.substring(name.length() + 1));
+
+                    if (ProfileAttributes.ROWS.equals(name))
+                    {
+                        rowCount = value;
+                    }
+                    else if (ProfileAttributes.BYTES.equals(name))
+                    {
+                        resultBytes = value;
+                    }
+                    else if (ProfileAttributes.FIRST_ROW_NANOS.equals(name))
+                    {
+                        firstRowNanos = value;
+                    }
+                    else if (ProfileAttributes.REQUESTED.equals(name))
+                    {
+                        requested = value;
+                    }
+                    else if (ProfileAttributes.SESSION_HITS.equals(name))
+                    {
+                        sessionHits = value;
+                    }
+                    else if (ProfileAttributes.QUERIES.equals(name))
+                    {
+                        queries = value;
+                    }
+                    else if (ProfileAttributes.CALLS.equals(name))
+                    {
+                        callCount = value;
+                    }
+                    else if (ProfileAttributes.COMMIT_NANOS.equals(name))
+                    {
+                        commitNanos = value;
+                    }
+                    else if (ProfileAttributes.ACQUIRE_NANOS.equals(name))
+                    {
+                        acquireNanos = value;
+                    }
+                    else if (ProfileAttributes.HELD_NANOS.equals(name))
+                    {
+                        heldNanos = value;
+                    }
+                    else if (ProfileAttributes.WAITING.equals(name))
+                    {
+                        waiting = value;
+                    }
+                    else if (HibernateCounter.forLabel(name) != null)
+                    {
+                        counters = counters == null ? new long[HibernateCounter.COUNT] : counters;
+                        counters[HibernateCounter.forLabel(name).ordinal()] = value;
+                    }
+                }
+            }
+        }
+        catch (final NumberFormatException e)
+        {
+            return null;
+        }
+
+        if (length == 3)
+        {
+            return new ProfileRecord(timestamp, fields[0], fields[1], null, null, duration, rowCount, resultBytes, firstRowNanos, requested, sessionHits, queries,
+                                     callCount, commitNanos, acquireNanos, heldNanos, waiting, counters, error);
+        }
+
+        // earlier versions wrote every identifier of a list as a field of its own
+        final StringBuilder identifiers = new StringBuilder(fields[3]);
+        for (int i = 4; i < length - 1; i++)
+        {
+            identifiers.append(',').append(fields[i]);
+        }
+
+        return new ProfileRecord(timestamp, fields[0], fields[1], fields[2], identifiers.toString(), duration, rowCount, resultBytes, firstRowNanos, requested,
+                                 sessionHits, queries, callCount, commitNanos, acquireNanos, heldNanos, waiting, counters, error);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,255 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+/**
+ * An immutable profile record as read back from a profile log.
+ */
+public final class ProfileRecord
+{
+    private final long timestampMillis;
+
+    private final String service;
+
+    private final String method;
+
+    private final String entity;
+
+    private final String identifiers;
+
+    private final long durationNanos;
+
+    private final String error;
+
+    private final long rowCount;
+
+    private final long resultBytes;
+
+    private final long firstRowNanos;
+
+    private final long requested;
+
+    private final long sessionHits;
+
+    private final long queries;
+
+    private final long callCount;
+
+    private final long commitNanos;
+
+    private final long acquireNanos;
+
+    private final long heldNanos;
+
+    private final long waiting;
+
+    private final long[] counters;
+
+    public ProfileRecord(final long timestampMillis, final String service, final String method, final String entity, final String identifiers, final long durationNanos)
+    {
+        this(timestampMillis, service, method, entity, identifiers, durationNanos, -1L, -1L, -1L, -1L, null);
+    }
+
+    public ProfileRecord(final long timestampMillis, final String service, final String method, final String entity, final String identifiers, final long durationNanos,
+                         final long rowCount, final long resultBytes, final long callCount, final long commitNanos, final long[] counters)
+    {
+        this(timestampMillis, service, method, entity, identifiers, durationNanos, rowCount, resultBytes, callCount, commitNanos, -1L, -1L, -1L, counters, null);
+    }
+
+    public ProfileRecord(final long timestampMillis, final String service, final String method, final String entity, final String identifiers, final long durationNanos,
+                         final long rowCount, final long resultBytes, final long callCount, final long commitNanos, final long acquireNanos, final long heldNanos,
+                         final long waiting, final long[] counters, final String error)
+    {
+        this(timestampMillis, service, method, entity, identifiers, durationNanos, rowCount, resultBytes, -1L, callCount, commitNanos, acquireNanos, heldNanos, waiting,
+             counters, error);
+    }
+
+    public ProfileRecord(final long timestampMillis, final String service, final String method, final String entity, final String identifiers, final long durationNanos,
+                         final long rowCount, final long resultBytes, final long firstRowNanos, final long callCount, final long commitNanos, final long acquireNanos,
+                         final long heldNanos, final long waiting, final long[] counters, final String error)
+    {
+        this(timestampMillis, service, method, entity, identifiers, durationNanos, rowCount, resultBytes, firstRowNanos, -1L, -1L, -1L, callCount, commitNanos,
+             acquireNanos, heldNanos, waiting, counters, error);
+    }
+
+    /**
+     * @param rowCount negative for single results.
+     * @param resultBytes negative when not estimated.
+     * @param firstRowNanos negative unless a streamed result.
+     * @param requested negative unless a multi-get, along with <code>sessionHits</code> and <code>queries</code>.
+     * @param callCount negative unless a transaction summary.
+     * @param commitNanos negative unless a transaction summary.
+     * @param acquireNanos negative unless the call acquired or released a connection, along with <code>heldNanos</code> and <code>waiting</code>.
+     * @param counters {@link HibernateCounter} deltas in ordinal order; <code>null</code> when not captured.
+     * @param error exception type of a failed call; <code>null</code> when successful.
+     */
+    public ProfileRecord(final long timestampMillis, final String service, final String method, final String entity, final String identifiers, final long durationNanos,
+                         final long rowCount, final long resultBytes, final long firstRowNanos, final long requested, final long sessionHits, final long queries,
+                         final long callCount, final long commitNanos, final long acquireNanos, final long heldNanos, final long waiting, final long[] counters,
+                         final String error)
+    {
+        this.timestampMillis = timestampMillis;
+        this.service = service;
+        this.method = method;
+        this.entity = entity;
+        this.identifiers = identifiers;
+        this.durationNanos = durationNanos;
+        this.rowCount = rowCount;
+        this.resultBytes = resultBytes;
+        this.firstRowNanos = firstRowNanos;
+        this.requested = requested;
+        this.sessionHits = sessionHits;
+        this.queries = queries;
+        this.callCount = callCount;
+        this.commitNanos = commitNanos;
+        this.acquireNanos = acquireNanos;
+        this.heldNanos = heldNanos;
+        this.waiting = waiting;
+        this.counters = counters == null ? null : counters.clone();
+        this.error = error;
+    }
+
+    public long getTimestampMillis()
+    {
+        return timestampMillis;
+    }
+
+    public String getService()
+    {
+        return service;
+    }
+
+    public String getMethod()
+    {
+        return method;
+    }
+
+    /**
+     * @return <code>null</code> when a list contained no profiled rows.
+     */
+    public String getEntity()
+    {
+        return entity;
+    }
+
+    public String getIdentifiers()
+    {
+        return identifiers;
+    }
+
+    public long getDurationNanos()
+    {
+        return durationNanos;
+    }
+
+    /**
+     * @return exception type of a failed call; <code>null</code> when successful.
+     */
+    public String getError()
+    {
+        return error;
+    }
+
+    public boolean isFailed()
+    {
+        return error != null;
+    }
+
+    /**
+     * @return rows in a list result; negative for single results and records written before rows were counted.
+     */
+    public long getRowCount()
+    {
+        return rowCount;
+    }
+
+    public long getResultBytes()
+    {
+        return resultBytes;
+    }
+
+    public long getFirstRowNanos()
+    {
+        return firstRowNanos;
+    }
+
+    public long getRequested()
+    {
+        return requested;
+    }
+
+    public long getSessionHits()
+    {
+        return sessionHits;
+    }
+
+    public long getQueries()
+    {
+        return queries;
+    }
+
+    public long getCallCount()
+    {
+        return callCount;
+    }
+
+    public long getCommitNanos()
+    {
+        return commitNanos;
+    }
+
+    /**
+     * @return negative unless the call acquired or released a connection from a {@link ProfilingDataSource}.
+     */
+    public long getAcquireNanos()
+    {
+        return acquireNanos;
+    }
+
+    public long getHeldNanos()
+    {
+        return heldNanos;
+    }
+
+    public long getWaiting()
+    {
+        return waiting;
+    }
+
+    public boolean hasCounters()
+    {
+        return counters != null;
+    }
+
+    public long getCounter(final HibernateCounter counter)
+    {
+        return counters == null ? 0L : counters[counter.ordinal()];
+    }
+
+    @Override public String toString()
+    {
+        final StringBuilder sb = new StringBuilder(service).append('|').append(method).append('|');
+
+        if (entity != null)
+        {
+            sb.append(entity).append('|').append(identifiers).append('|');
+        }
+
+        ProfilingClock.appendMillis(sb, durationNanos);
+        return ProfileAttributes.appendTo(sb, error, rowCount, resultBytes, firstRowNanos, requested, sessionHits, queries, callCount, commitNanos, acquireNanos,
+                                          heldNanos, waiting, counters).toString();
+    }
+}
\ No newline at end of file
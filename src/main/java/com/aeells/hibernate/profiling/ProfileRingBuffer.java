@@ -0,0 +1,269 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.apache.commons.lang.Validate;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands profile events off to a single background writer through a bounded, preallocated multi-producer ring buffer,
+ * so profiled calls never wait on log formatting or appender I/O. Events are copied into reused slots; when the
+ * writer falls a full buffer behind the {@link OverflowPolicy} decides whether to drop or wait.
+ * <p/>
+ * {@link #start()} and {@link #stop()} are intended as Spring <code>init-method</code> and <code>destroy-method</code>.
+ */
+public final class ProfileRingBuffer implements ProfileEventHandler
+{
+    private static final Logger LOGGER = Logger.getLogger(ProfileRingBuffer.class);
+
+    private static final long IDLE_PARK_NANOS = 1000000L;
+
+    private static final long FULL_PARK_NANOS = 1000L;
+
+    private static final long PUBLISH_TIMEOUT_NANOS = 100000000L;
+
+    // claim sequence once stopped, after which events are dropped
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private final ProfileEventHandler writer;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final ProfileEvent[] slots;
+
+    private final AtomicLongArray published;
+
+    private final int mask;
+
+    private final AtomicLong claimed = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile long consumed;
+
+    private volatile boolean running;
+
+    private Thread consumer;
+
+    public ProfileRingBuffer(final ProfileEventHandler writer, final int capacity, final OverflowPolicy overflowPolicy)
+    {
+        Validate.notNull(writer, "writer cannot be null!");
+        Validate.isTrue(capacity > 0, "capacity must be positive!");
+        Validate.notNull(overflowPolicy, "overflow policy cannot be null!");
+
+        this.writer = writer;
+        this.overflowPolicy = overflowPolicy;
+
+        final int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.slots = new ProfileEvent[size];
+        this.published = new AtomicLongArray(size);
+        this.mask = size - 1;
+
+        for (int i = 0; i < size; i++)
+        {
+            slots[i] = new ProfileEvent();
+            published.set(i, -1L);
+        }
+    }
+
+    public synchronized void start()
+    {
+        if (!running)
+        {
+            claimed.compareAndSet(CLOSED, consumed);
+            running = true;
+            consumer = new Thread(new Runnable()
+            {
+                @Override public void run()
+                {
+                    try
+                    {
+                        consume();
+                    }
+                    finally
+                    {
+                        // should the writer die, producers drop rather than wait on it, even when blocking
+                        claimed.set(CLOSED);
+                    }
+                }
+            }, "hibernate-profiling-writer");
+            consumer.setDaemon(true);
+            consumer.start();
+        }
+    }
+
+    /**
+     * Stops the writer once every event already claimed has been written, waiting briefly for those claimed but not yet
+     * published. Events not published in time, or arriving after, are counted as dropped.
+     */
+    public synchronized void stop() throws InterruptedException
+    {
+        if (running)
+        {
+            running = false;
+            LockSupport.unpark(consumer);
+            consumer.join();
+            consumer = null;
+        }
+    }
+
+    @Override public void onEvent(final ProfileEvent event)
+    {
+        long sequence;
+
+        do
+        {
+            sequence = claimed.get();
+
+            if (sequence == CLOSED)
+            {
+                dropped.incrementAndGet();
+                return;
+            }
+
+            if (sequence - consumed >= slots.length)
+            {
+                if (overflowPolicy == OverflowPolicy.DROP || !running)
+                {
+                    dropped.incrementAndGet();
+                    return;
+                }
+
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+                sequence = -1L;
+            }
+        }
+        while (sequence < 0 || !claimed.compareAndSet(sequence, sequence + 1));
+
+        final int index = (int) sequence & mask;
+        slots[index].copyFrom(event);
+        published.set(index, sequence);
+    }
+
+    /**
+     * @return the number of events discarded because the buffer was full or stopped.
+     */
+    public long getDroppedCount()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * @return the number of events published but not yet written.
+     */
+    public long getBacklog()
+    {
+        final long sequence = claimed.get();
+        return sequence == CLOSED ? 0L : sequence - consumed;
+    }
+
+    public int getCapacity()
+    {
+        return slots.length;
+    }
+
+    private void consume()
+    {
+        while (running)
+        {
+            final long sequence = consumed;
+            final int index = (int) sequence & mask;
+
+            if (published.get(index) == sequence)
+            {
+                write(slots[index]);
+                consumed = sequence + 1;
+            }
+            else
+            {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+
+        drain();
+    }
+
+    // writes everything claimed up to closing the claim sequence, so no claimed event is left behind unaccounted for
+    private void drain()
+    {
+        long target = claimed.get();
+
+        while (true)
+        {
+            while (consumed < target)
+            {
+                final long sequence = consumed;
+                final int index = (int) sequence & mask;
+
+                if (awaitPublished(index, sequence))
+                {
+                    write(slots[index]);
+                }
+                else
+                {
+                    dropped.incrementAndGet();
+                }
+
+                consumed = sequence + 1;
+            }
+
+            if (claimed.compareAndSet(target, CLOSED))
+            {
+                return;
+            }
+
+            target = claimed.get();
+        }
+    }
+
+    private boolean awaitPublished(final int index, final long sequence)
+    {
+        final long deadline = System.nanoTime() + PUBLISH_TIMEOUT_NANOS;
+
+        while (published.get(index) != sequence)
+        {
+            if (System.nanoTime() - deadline >= 0)
+            {
+                return false;
+            }
+
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+
+        return true;
+    }
+
+    private void write(final ProfileEvent event)
+    {
+        try
+        {
+            writer.onEvent(event);
+        }
+        // errors too, as an appender's OutOfMemoryError or StackOverflowError would otherwise end the writer
+        catch (final Throwable t)
+        {
+            LOGGER.error("unable to write profile event: " + event, t);
+        }
+        finally
+        {
+            event.clear();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.apache.commons.beanutils.BeanUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Profiling metadata for a {@link HibernateProfiled} persistent class, resolved once and shared by every call.
+ */
+final class ProfiledClass
+{
+    private final String entityName;
+
+    private final String identifier;
+
+    private final Method identifierAccessor;
+
+    private final double sampleRate;
+
+    private final long slowCallThresholdNanos;
+
+    private final long shallowSize;
+
+    private volatile boolean enabled = true;
+
+    ProfiledClass(final String entityName, final String identifier, final Method identifierAccessor, final double sampleRate, final long slowCallThresholdMillis,
+                  final long shallowSize)
+    {
+        this.entityName = entityName;
+        this.identifier = identifier;
+        this.identifierAccessor = identifierAccessor;
+        this.sampleRate = sampleRate;
+        this.slowCallThresholdNanos = slowCallThresholdMillis < 0 ? -1L : TimeUnit.MILLISECONDS.toNanos(slowCallThresholdMillis);
+        this.shallowSize = shallowSize;
+    }
+
+    String getEntityName()
+    {
+        return entityName;
+    }
+
+    /**
+     * @return the class specific sample rate; negative when the interceptor's rate applies.
+     */
+    double getSampleRate()
+    {
+        return sampleRate;
+    }
+
+    /**
+     * @return the class specific slow call threshold; negative when the interceptor's threshold applies.
+     */
+    long getSlowCallThresholdNanos()
+    {
+        return slowCallThresholdNanos;
+    }
+
+    /**
+     * @return approximate bytes of an instance excluding the objects it references.
+     */
+    long getShallowSize()
+    {
+        return shallowSize;
+    }
+
+    boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    void setEnabled(final boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    String getIdentifier(final Object model) throws InvocationTargetException, IllegalAccessException, NoSuchMethodException
+    {
+        if (identifierAccessor == null)
+        {
+            // nested or otherwise non simple identifier properties
+            return BeanUtils.getProperty(model, identifier);
+        }
+
+        final Object id = identifierAccessor.invoke(model);
+        return id == null ? null : id.toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,242 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.hibernate.proxy.HibernateProxy;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolves and caches {@link ProfiledClass} metadata per runtime class. The annotation is searched for up the class
+ * hierarchy so that subclasses and Hibernate proxies of a {@link HibernateProfiled} class are profiled under the
+ * persistent class name. Lookups of already resolved classes are a single lock free map read.
+ * <p/>
+ * Profiling can be switched off per entity name at runtime; the switch is held on the resolved metadata so that
+ * checking it costs a volatile read.
+ */
+final class ProfiledClassRegistry
+{
+    private static final ProfiledClass NOT_PROFILED = new ProfiledClass(null, null, null, -1d, -1L, 0L);
+
+    private final ConcurrentMap<Class<?>, ProfiledClass> profiledClasses = new ConcurrentHashMap<Class<?>, ProfiledClass>();
+
+    private final ConcurrentMap<String, ProfiledClass> profiledClassNames = new ConcurrentHashMap<String, ProfiledClass>();
+
+    private final ConcurrentMap<String, Boolean> disabledEntities = new ConcurrentHashMap<String, Boolean>();
+
+    /**
+     * @return the profiling metadata for <code>type</code>; <code>null</code> if it is not {@link HibernateProfiled}.
+     */
+    ProfiledClass lookup(final Class<?> type)
+    {
+        ProfiledClass profiledClass = profiledClasses.get(type);
+
+        if (profiledClass == null)
+        {
+            final ProfiledClass resolved = resolve(type);
+            profiledClass = profiledClasses.putIfAbsent(type, resolved);
+
+            if (profiledClass == null)
+            {
+                profiledClass = resolved;
+                applyEnabled(profiledClass);
+            }
+        }
+
+        return profiledClass == NOT_PROFILED ? null : profiledClass;
+    }
+
+    /**
+     * @return the profiling metadata for a criteria root class name; <code>null</code> if it is not {@link HibernateProfiled}
+     *         or names a mapped entity rather than a class.
+     */
+    ProfiledClass lookup(final String className)
+    {
+        ProfiledClass profiledClass = profiledClassNames.get(className);
+
+        if (profiledClass == null)
+        {
+            ProfiledClass resolved;
+
+            try
+            {
+                final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+                resolved = lookup(Class.forName(className, false, classLoader == null ? getClass().getClassLoader() : classLoader));
+            }
+            catch (final ClassNotFoundException e)
+            {
+                resolved = null;
+            }
+
+            profiledClass = profiledClassNames.putIfAbsent(className, resolved == null ? NOT_PROFILED : resolved);
+
+            if (profiledClass == null)
+            {
+                profiledClass = resolved == null ? NOT_PROFILED : resolved;
+            }
+        }
+
+        return profiledClass == NOT_PROFILED ? null : profiledClass;
+    }
+
+    void setEnabled(final String entityName, final boolean enabled)
+    {
+        if (enabled)
+        {
+            disabledEntities.remove(entityName);
+        }
+        else
+        {
+            disabledEntities.put(entityName, Boolean.TRUE);
+        }
+
+        for (final ProfiledClass profiledClass : profiledClasses.values())
+        {
+            if (entityName.equals(profiledClass.getEntityName()))
+            {
+                applyEnabled(profiledClass);
+            }
+        }
+    }
+
+    Set<String> getDisabledEntities()
+    {
+        return new TreeSet<String>(disabledEntities.keySet());
+    }
+
+    private void applyEnabled(final ProfiledClass profiledClass)
+    {
+        if (profiledClass != NOT_PROFILED)
+        {
+            profiledClass.setEnabled(!disabledEntities.containsKey(profiledClass.getEntityName()));
+        }
+    }
+
+    private static ProfiledClass resolve(final Class<?> type)
+    {
+        final HibernateProfiled annotation = findAnnotation(type);
+
+        if (annotation == null)
+        {
+            return NOT_PROFILED;
+        }
+
+        final Class<?> persistentClass = unproxy(type);
+        return new ProfiledClass(persistentClass.getSimpleName(), annotation.identifier(), findAccessor(persistentClass, annotation.identifier()),
+                                 annotation.sampleRate(), annotation.slowCallThresholdMillis(), shallowSizeOf(persistentClass));
+    }
+
+    private static HibernateProfiled findAnnotation(final Class<?> type)
+    {
+        for (Class<?> candidate = type; candidate != null && candidate != Object.class; candidate = candidate.getSuperclass())
+        {
+            final HibernateProfiled annotation = candidate.getAnnotation(HibernateProfiled.class);
+
+            if (annotation != null)
+            {
+                return annotation;
+            }
+        }
+
+        return null;
+    }
+
+    private static Class<?> unproxy(final Class<?> type)
+    {
+        Class<?> persistentClass = type;
+
+        while (HibernateProxy.class.isAssignableFrom(persistentClass))
+        {
+            persistentClass = persistentClass.getSuperclass();
+        }
+
+        return persistentClass;
+    }
+
+    // object header and fields rounded to 8 bytes as laid out by a 64 bit JVM with compressed references
+    static long shallowSizeOf(final Class<?> type)
+    {
+        long size = 12L;
+
+        for (Class<?> declaring = type; declaring != null && declaring != Object.class; declaring = declaring.getSuperclass())
+        {
+            for (final Field field : declaring.getDeclaredFields())
+            {
+                if (!Modifier.isStatic(field.getModifiers()))
+                {
+                    size += fieldSizeOf(field.getType());
+                }
+            }
+        }
+
+        return (size + 7L) & ~7L;
+    }
+
+    private static int fieldSizeOf(final Class<?> type)
+    {
+        if (type == long.class || type == double.class)
+        {
+            return 8;
+        }
+
+        if (type == short.class || type == char.class)
+        {
+            return 2;
+        }
+
+        if (type == byte.class || type == boolean.class)
+        {
+            return 1;
+        }
+
+        return 4;
+    }
+
+    private static Method findAccessor(final Class<?> persistentClass, final String identifier)
+    {
+        try
+        {
+            for (final PropertyDescriptor descriptor : Introspector.getBeanInfo(persistentClass).getPropertyDescriptors())
+            {
+                if (descriptor.getName().equals(identifier) && descriptor.getReadMethod() != null)
+                {
+                    final Method accessor = descriptor.getReadMethod();
+                    accessor.setAccessible(true);
+                    return accessor;
+                }
+            }
+        }
+        catch (final IntrospectionException e)
+        {
+            // fall back to per call property resolution
+        }
+        catch (final SecurityException e)
+        {
+            // fall back to per call property resolution
+        }
+
+        return null;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.hibernate.HibernateException;
+import org.hibernate.event.AutoFlushEvent;
+import org.hibernate.event.EventSource;
+import org.hibernate.event.def.DefaultAutoFlushEventListener;
+
+/**
+ * Times the flushes Hibernate makes ahead of a query whose tables have pending writes, as a
+ * {@link ProfilingFlushEventListener} does explicit flushes, publishing them as <code>autoFlush</code>. Checks which
+ * find nothing to flush are not published. Registered as the session factory's <code>auto-flush</code> event listener.
+ */
+public class ProfilingAutoFlushEventListener extends DefaultAutoFlushEventListener
+{
+    private static final long serialVersionUID = 1L;
+
+    private transient HibernateProfilingInterceptor interceptor;
+
+    // rows written, or -1 until performExecutions shows the check found something to flush
+    private final transient ThreadLocal<long[]> rows = new ThreadLocal<long[]>()
+    {
+        @Override protected long[] initialValue()
+        {
+            return new long[1];
+        }
+    };
+
+    public void setInterceptor(final HibernateProfilingInterceptor interceptor)
+    {
+        this.interceptor = interceptor;
+
+        if (interceptor != null)
+        {
+            interceptor.setProfileFlushes(true);
+        }
+    }
+
+    @Override public void onAutoFlush(final AutoFlushEvent event) throws HibernateException
+    {
+        if (interceptor == null || !interceptor.isProfiling())
+        {
+            super.onAutoFlush(event);
+            return;
+        }
+
+        final long[] counters = ProfilingFlushEventListener.startCounting(interceptor);
+        rows.get()[0] = -1L;
+        final long start = ProfilingClock.now();
+
+        try
+        {
+            super.onAutoFlush(event);
+        }
+        catch (final HibernateException e)
+        {
+            interceptor.publishFlush("autoFlush", ProfilingClock.elapsedSince(start), Math.max(rows.get()[0], 0L), ProfilingFlushEventListener.stopCounting(counters), e);
+            throw e;
+        }
+
+        if (rows.get()[0] >= 0)
+        {
+            interceptor.publishFlush("autoFlush", ProfilingClock.elapsedSince(start), rows.get()[0], ProfilingFlushEventListener.stopCounting(counters), null);
+        }
+    }
+
+    @Override protected void performExecutions(final EventSource session) throws HibernateException
+    {
+        if (interceptor != null)
+        {
+            rows.get()[0] = ProfilingFlushEventListener.rowsOf(session.getActionQueue());
+        }
+
+        super.performExecutions(session);
+    }
+
+    // the interceptor and rows do not survive serialization, leaving a listener which only flushes
+    private Object readResolve()
+    {
+        return new ProfilingAutoFlushEventListener();
+    }
+}
\ No newline at end of file
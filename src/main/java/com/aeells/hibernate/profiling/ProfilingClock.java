@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+/**
+ * Monotonic nanosecond timing for profiled calls. Nothing is allocated per call; durations are rendered as
+ * milliseconds to microsecond precision so that sub-millisecond calls no longer report as zero.
+ */
+final class ProfilingClock
+{
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private static final long NANOS_PER_MICRO = 1000L;
+
+    private ProfilingClock()
+    {
+    }
+
+    static long now()
+    {
+        return System.nanoTime();
+    }
+
+    static long elapsedSince(final long start)
+    {
+        return System.nanoTime() - start;
+    }
+
+    static StringBuilder appendMillis(final StringBuilder sb, final long nanos)
+    {
+        final long micros = (nanos % NANOS_PER_MILLI) / NANOS_PER_MICRO;
+        sb.append(nanos / NANOS_PER_MILLI).append('.');
+
+        if (micros < 100)
+        {
+            sb.append('0');
+        }
+
+        if (micros < 10)
+        {
+            sb.append('0');
+        }
+
+        return sb.append(micros);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,255 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps the pooled <code>DataSource</code> given to the session factory to time how long callers wait to acquire a
+ * connection and how long they hold it, and to count callers waiting at once. Given to a
+ * {@link HibernateProfilingInterceptor}, the figures are added to the profile records and statistics of the calls
+ * which acquired or released a connection, telling pool exhaustion apart from slow queries.
+ */
+public final class ProfilingDataSource extends DelegatingDataSource
+{
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final AtomicLong maxWaiting = new AtomicLong();
+
+    private final AtomicLong maxActive = new AtomicLong();
+
+    private final AtomicLong acquisitions = new AtomicLong();
+
+    private final AtomicLong acquireNanos = new AtomicLong();
+
+    private final AtomicLong maxAcquireNanos = new AtomicLong();
+
+    private final AtomicLong releases = new AtomicLong();
+
+    private final AtomicLong heldNanos = new AtomicLong();
+
+    private final AtomicLong maxHeldNanos = new AtomicLong();
+
+    private final ThreadLocal<ConnectionUsage> usage = new ThreadLocal<ConnectionUsage>()
+    {
+        @Override protected ConnectionUsage initialValue()
+        {
+            return new ConnectionUsage();
+        }
+    };
+
+    public ProfilingDataSource()
+    {
+    }
+
+    public ProfilingDataSource(final DataSource targetDataSource)
+    {
+        super(targetDataSource);
+    }
+
+    @Override public Connection getConnection() throws SQLException
+    {
+        return acquire(null, null, false);
+    }
+
+    @Override public Connection getConnection(final String username, final String password) throws SQLException
+    {
+        return acquire(username, password, true);
+    }
+
+    private Connection acquire(final String username, final String password, final boolean credentials) throws SQLException
+    {
+        final int ahead = waiting.getAndIncrement();
+        updateMax(maxWaiting, ahead + 1);
+        final long start = ProfilingClock.now();
+        final Connection connection;
+
+        try
+        {
+            connection = credentials ? getTargetDataSource().getConnection(username, password) : getTargetDataSource().getConnection();
+        }
+        finally
+        {
+            waiting.decrementAndGet();
+
+            // failed acquisitions, e.g. exhausted pool timeouts, count towards the time spent waiting
+            final long nanos = ProfilingClock.elapsedSince(start);
+            acquisitions.incrementAndGet();
+            acquireNanos.addAndGet(nanos);
+            updateMax(maxAcquireNanos, nanos);
+            usage.get().acquired(nanos, ahead);
+        }
+
+        updateMax(maxActive, active.incrementAndGet());
+        return (Connection) Proxy.newProxyInstance(ProfilingDataSource.class.getClassLoader(), new Class<?>[]{Connection.class}, new HeldConnection(connection));
+    }
+
+    private void release(final long nanos)
+    {
+        active.decrementAndGet();
+        releases.incrementAndGet();
+        heldNanos.addAndGet(nanos);
+        updateMax(maxHeldNanos, nanos);
+        usage.get().released(nanos);
+    }
+
+    private static void updateMax(final AtomicLong max, final long value)
+    {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value))
+        {
+            current = max.get();
+        }
+    }
+
+    // profiled calls do not nest, so usage is gathered per thread from the start of each call
+    void beginCall()
+    {
+        usage.get().clear();
+    }
+
+    ConnectionUsage endCall()
+    {
+        return usage.get();
+    }
+
+    /**
+     * @return callers currently waiting in <code>getConnection</code>.
+     */
+    public int getWaiting()
+    {
+        return waiting.get();
+    }
+
+    public long getMaxWaiting()
+    {
+        return maxWaiting.get();
+    }
+
+    /**
+     * @return connections handed out and not yet closed.
+     */
+    public int getActive()
+    {
+        return active.get();
+    }
+
+    public long getMaxActive()
+    {
+        return maxActive.get();
+    }
+
+    public long getAcquisitions()
+    {
+        return acquisitions.get();
+    }
+
+    public long getAcquireNanos()
+    {
+        return acquireNanos.get();
+    }
+
+    public long getMaxAcquireNanos()
+    {
+        return maxAcquireNanos.get();
+    }
+
+    public long getReleases()
+    {
+        return releases.get();
+    }
+
+    public long getHeldNanos()
+    {
+        return heldNanos.get();
+    }
+
+    public long getMaxHeldNanos()
+    {
+        return maxHeldNanos.get();
+    }
+
+    /**
+     * Resets the totals and maximums; connections currently waiting or active are still counted.
+     */
+    public void reset()
+    {
+        maxWaiting.set(waiting.get());
+        maxActive.set(active.get());
+        acquisitions.set(0L);
+        acquireNanos.set(0L);
+        maxAcquireNanos.set(0L);
+        releases.set(0L);
+        heldNanos.set(0L);
+        maxHeldNanos.set(0L);
+    }
+
+    private final class HeldConnection implements InvocationHandler
+    {
+        private final Connection target;
+
+        private final long acquired = ProfilingClock.now();
+
+        private boolean closed;
+
+        private HeldConnection(final Connection target)
+        {
+            this.target = target;
+        }
+
+        @Override public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable
+        {
+            final String name = method.getName();
+
+            if ("equals".equals(name) && args != null && args.length == 1)
+            {
+                return proxy == args[0];
+            }
+
+            if ("hashCode".equals(name) && args == null)
+            {
+                return System.identityHashCode(proxy);
+            }
+
+            if ("close".equals(name) && args == null && !closed)
+            {
+                closed = true;
+                release(ProfilingClock.elapsedSince(acquired));
+            }
+
+            try
+            {
+                return method.invoke(target, args);
+            }
+            catch (final InvocationTargetException e)
+            {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
\ No newline at end of file
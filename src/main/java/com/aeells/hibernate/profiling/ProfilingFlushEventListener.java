@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.hibernate.HibernateException;
+import org.hibernate.engine.ActionQueue;
+import org.hibernate.event.EventSource;
+import org.hibernate.event.FlushEvent;
+import org.hibernate.event.def.DefaultFlushEventListener;
+
+/**
+ * Times session flushes, explicit or on commit, where the SQL of <code>create</code>, <code>update</code> and
+ * <code>delete</code> calls is actually executed, counting the rows inserted, updated and deleted and, when the
+ * interceptor counts Hibernate activity, the {@link HibernateCounter} deltas. Each flush is published through the
+ * {@link HibernateProfilingInterceptor}, attributed to the profiled writes made on the thread since the previous one.
+ * Registered as the session factory's <code>flush</code> event listener; flushes ahead of queries are timed by a
+ * {@link ProfilingAutoFlushEventListener}.
+ */
+public class ProfilingFlushEventListener extends DefaultFlushEventListener
+{
+    private static final long serialVersionUID = 1L;
+
+    private transient HibernateProfilingInterceptor interceptor;
+
+    // the listener is shared by every session so rows are handed from performExecutions to onFlush per thread
+    private final transient ThreadLocal<long[]> rows = new ThreadLocal<long[]>()
+    {
+        @Override protected long[] initialValue()
+        {
+            return new long[1];
+        }
+    };
+
+    public void setInterceptor(final HibernateProfilingInterceptor interceptor)
+    {
+        this.interceptor = interceptor;
+
+        if (interceptor != null)
+        {
+            interceptor.setProfileFlushes(true);
+        }
+    }
+
+    @Override public void onFlush(final FlushEvent event) throws HibernateException
+    {
+        if (interceptor == null || !interceptor.isProfiling())
+        {
+            super.onFlush(event);
+            return;
+        }
+
+        final long[] counters = startCounting(interceptor);
+        rows.get()[0] = 0L;
+        final long start = ProfilingClock.now();
+
+        try
+        {
+            super.onFlush(event);
+        }
+        catch (final HibernateException e)
+        {
+            interceptor.publishFlush("flush", ProfilingClock.elapsedSince(start), rows.get()[0], stopCounting(counters), e);
+            throw e;
+        }
+
+        interceptor.publishFlush("flush", ProfilingClock.elapsedSince(start), rows.get()[0], stopCounting(counters), null);
+    }
+
+    @Override protected void performExecutions(final EventSource session) throws HibernateException
+    {
+        if (interceptor != null)
+        {
+            rows.get()[0] = rowsOf(session.getActionQueue());
+        }
+
+        super.performExecutions(session);
+    }
+
+    // the interceptor and rows do not survive serialization, leaving a listener which only flushes
+    private Object readResolve()
+    {
+        return new ProfilingFlushEventListener();
+    }
+
+    static long rowsOf(final ActionQueue actions)
+    {
+        return actions.numberOfInsertions() + actions.numberOfUpdates() + actions.numberOfDeletions();
+    }
+
+    // a flush may run within a profiled call, so counters are kept apart from the interceptor's
+    static long[] startCounting(final HibernateProfilingInterceptor interceptor)
+    {
+        if (!interceptor.isCountingHibernateActivity())
+        {
+            return null;
+        }
+
+        final long[] counters = new long[HibernateCounter.COUNT];
+        System.arraycopy(HibernateCounter.threadCounts(), 0, counters, 0, HibernateCounter.COUNT);
+        return counters;
+    }
+
+    static long[] stopCounting(final long[] counters)
+    {
+        if (counters != null)
+        {
+            final long[] counts = HibernateCounter.threadCounts();
+
+            for (int i = 0; i < HibernateCounter.COUNT; i++)
+            {
+                counters[i] = counts[i] - counters[i];
+            }
+        }
+
+        return counters;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.hibernate.HibernateException;
+import org.hibernate.LockMode;
+import org.hibernate.engine.EntityKey;
+import org.hibernate.event.InitializeCollectionEvent;
+import org.hibernate.event.InitializeCollectionEventListener;
+import org.hibernate.event.LoadEvent;
+import org.hibernate.event.PostLoadEvent;
+import org.hibernate.event.PostLoadEventListener;
+import org.hibernate.event.def.DefaultLoadEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Counts entity loads, association fetches, second level cache lookups of entities and lazy collection
+ * initialisations on the calling thread for the {@link HibernateCounter} deltas of profiled calls. Registered as the
+ * session factory's <code>load</code> listener in place of the default, and ahead of the default <code>post-load</code>
+ * and <code>load-collection</code> listeners, which still do the work.
+ */
+public class ProfilingLoadEventListener extends DefaultLoadEventListener implements PostLoadEventListener, InitializeCollectionEventListener
+{
+    private static final long serialVersionUID = 1L;
+
+    @Override public void onPostLoad(final PostLoadEvent event)
+    {
+        HibernateCounter.ENTITY_LOADS.increment();
+    }
+
+    @Override public void onInitializeCollection(final InitializeCollectionEvent event) throws HibernateException
+    {
+        if (!event.getCollection().wasInitialized())
+        {
+            HibernateCounter.COLLECTION_LOADS.increment();
+        }
+    }
+
+    @Override protected Object loadFromDatasource(final LoadEvent event, final EntityPersister persister, final EntityKey keyToLoad, final LoadType options)
+    {
+        if (event.isAssociationFetch())
+        {
+            HibernateCounter.ENTITY_FETCHES.increment();
+        }
+
+        return super.loadFromDatasource(event, persister, keyToLoad, options);
+    }
+
+    // the same conditions as the default listener's lookup, which reports nothing of its outcome
+    @Override protected Object loadFromSecondLevelCache(final LoadEvent event, final EntityPersister persister, final LoadType options)
+    {
+        final Object entity = super.loadFromSecondLevelCache(event, persister, options);
+
+        if (entity != null)
+        {
+            HibernateCounter.CACHE_HITS.increment();
+
+            // assembling the cached entity fired a post load, though nothing was loaded from the database
+            HibernateCounter.ENTITY_LOADS.decrement();
+        }
+        else if (persister.hasCache() && event.getSession().getCacheMode().isGetEnabled() && event.getLockMode().lessThan(LockMode.READ))
+        {
+            HibernateCounter.CACHE_MISSES.increment();
+        }
+
+        return entity;
+    }
+}
\ No newline at end of file
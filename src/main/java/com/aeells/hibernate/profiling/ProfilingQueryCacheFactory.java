@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.hibernate.HibernateException;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.QueryCache;
+import org.hibernate.cache.QueryCacheFactory;
+import org.hibernate.cache.QueryKey;
+import org.hibernate.cache.QueryResultsRegion;
+import org.hibernate.cache.StandardQueryCacheFactory;
+import org.hibernate.cache.UpdateTimestampsCache;
+import org.hibernate.cfg.Settings;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.type.Type;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Counts query cache lookups on the calling thread for the {@link HibernateCounter} deltas of profiled calls, wrapping
+ * the standard query caches. Registered with the session factory's <code>hibernate.cache.query_cache_factory</code>
+ * property.
+ */
+public class ProfilingQueryCacheFactory implements QueryCacheFactory
+{
+    private final QueryCacheFactory delegate = new StandardQueryCacheFactory();
+
+    @Override public QueryCache getQueryCache(final String regionName, final UpdateTimestampsCache updateTimestampsCache, final Settings settings,
+                                              final Properties properties) throws HibernateException
+    {
+        return new ProfilingQueryCache(delegate.getQueryCache(regionName, updateTimestampsCache, settings, properties));
+    }
+
+    private static final class ProfilingQueryCache implements QueryCache
+    {
+        private final QueryCache delegate;
+
+        private ProfilingQueryCache(final QueryCache delegate)
+        {
+            this.delegate = delegate;
+        }
+
+        // a miss as Hibernate counts it, stale results included
+        @Override public List get(final QueryKey key, final Type[] returnTypes, final boolean isNaturalKeyLookup, final Set spaces,
+                                  final SessionImplementor session) throws HibernateException
+        {
+            final List result = delegate.get(key, returnTypes, isNaturalKeyLookup, spaces, session);
+            (result == null ? HibernateCounter.QUERY_CACHE_MISSES : HibernateCounter.QUERY_CACHE_HITS).increment();
+            return result;
+        }
+
+        @Override public boolean put(final QueryKey key, final Type[] returnTypes, final List result, final boolean isNaturalKeyLookup,
+                                     final SessionImplementor session) throws HibernateException
+        {
+            return delegate.put(key, returnTypes, result, isNaturalKeyLookup, session);
+        }
+
+        @Override public void clear() throws CacheException
+        {
+            delegate.clear();
+        }
+
+        @Override public void destroy()
+        {
+            delegate.destroy();
+        }
+
+        @Override public QueryResultsRegion getRegion()
+        {
+            return delegate.getRegion();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.apache.commons.lang.Validate;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Live, in process latency statistics keyed by <code>HibernateService</code> method and profiled entity. Recording
+ * is lock free; keys are resolved through nested maps so that no key is built per call.
+ */
+public final class ProfilingStatistics
+{
+    private static final long DEFAULT_INTERVAL_MILLIS = 10000L;
+
+    private static final int DEFAULT_INTERVAL_COUNT = 6;
+
+    private final ConcurrentMap<String, ConcurrentMap<String, OperationStatistics>> operations = new ConcurrentHashMap<String, ConcurrentMap<String, OperationStatistics>>();
+
+    private final long intervalNanos;
+
+    private final int intervalCount;
+
+    /**
+     * Percentiles cover a rolling window of one minute.
+     */
+    public ProfilingStatistics()
+    {
+        this(DEFAULT_INTERVAL_MILLIS, DEFAULT_INTERVAL_COUNT);
+    }
+
+    /**
+     * @param intervalMillis granularity at which the rolling window advances.
+     * @param intervalCount number of intervals making up the rolling window.
+     */
+    public ProfilingStatistics(final long intervalMillis, final int intervalCount)
+    {
+        Validate.isTrue(intervalMillis > 0, "interval must be positive!");
+        Validate.isTrue(intervalCount > 0, "interval count must be positive!");
+
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.intervalCount = intervalCount;
+    }
+
+    public void record(final String method, final String entity, final long nanos, final boolean slow)
+    {
+        get(method, entity).record(nanos, slow);
+    }
+
+    /**
+     * @param rows rows returned by a list call; negative for single results.
+     * @param counters {@link HibernateCounter} deltas for the call in ordinal order; <code>null</code> when not captured.
+     */
+    public void record(final String method, final String entity, final long nanos, final boolean slow, final long rows, final long[] counters)
+    {
+        get(method, entity).record(nanos, slow, rows, counters);
+    }
+
+    void record(final String method, final String entity, final long nanos, final boolean slow, final long rows, final long[] counters,
+                final ConnectionUsage connection)
+    {
+        get(method, entity).record(nanos, slow, rows, counters, connection);
+    }
+
+    public void recordError(final String method, final String entity)
+    {
+        get(method, entity).recordError(-1L);
+    }
+
+    /**
+     * @param nanos time until the call failed, counted apart from successful calls.
+     */
+    public void recordError(final String method, final String entity, final long nanos)
+    {
+        get(method, entity).recordError(nanos);
+    }
+
+    void recordError(final String method, final String entity, final long nanos, final long[] counters, final ConnectionUsage connection)
+    {
+        get(method, entity).recordError(nanos, counters, connection);
+    }
+
+    public OperationStatistics get(final String method, final String entity)
+    {
+        ConcurrentMap<String, OperationStatistics> byEntity = operations.get(method);
+
+        if (byEntity == null)
+        {
+            final ConcurrentMap<String, OperationStatistics> created = new ConcurrentHashMap<String, OperationStatistics>();
+            byEntity = operations.putIfAbsent(method, created);
+
+            if (byEntity == null)
+            {
+                byEntity = created;
+            }
+        }
+
+        OperationStatistics statistics = byEntity.get(entity);
+
+        if (statistics == null)
+        {
+            final OperationStatistics created = new OperationStatistics(intervalNanos, intervalCount);
+            statistics = byEntity.putIfAbsent(entity, created);
+
+            if (statistics == null)
+            {
+                statistics = created;
+            }
+        }
+
+        return statistics;
+    }
+
+    /**
+     * @return every operation recorded so far keyed by <code>method|Entity</code>.
+     */
+    public SortedMap<String, OperationStatistics> getOperations()
+    {
+        final SortedMap<String, OperationStatistics> snapshot = new TreeMap<String, OperationStatistics>();
+
+        for (final Map.Entry<String, ConcurrentMap<String, OperationStatistics>> method : operations.entrySet())
+        {
+            for (final Map.Entry<String, OperationStatistics> entity : method.getValue().entrySet())
+            {
+                snapshot.put(method.getKey() + "|" + entity.getKey(), entity.getValue());
+            }
+        }
+
+        return snapshot;
+    }
+
+    public void reset()
+    {
+        for (final ConcurrentMap<String, OperationStatistics> byEntity : operations.values())
+        {
+            for (final OperationStatistics statistics : byEntity.values())
+            {
+                statistics.reset();
+            }
+        }
+    }
+}
\ No newline at end of file
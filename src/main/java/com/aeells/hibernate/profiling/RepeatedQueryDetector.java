@@ -0,0 +1,249 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.apache.commons.lang.Validate;
+import org.apache.log4j.Logger;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Transaction;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Detects N+1 query patterns, e.g. iterating lazy <code>Parent.getChildren()</code> after finding the parents.
+ * Registered as the <code>SessionFactory</code> entity interceptor, it fingerprints every query prepared within a
+ * Hibernate transaction and, when the transaction completes, warns of each fingerprint executed more than the
+ * threshold, naming the profiled service call during which it was first executed when given to the
+ * {@link HibernateProfilingInterceptor}. Statements prepared outside a transaction are not recorded. Every statement
+ * prepared is also counted on the calling thread for the interceptor's {@link HibernateCounter} deltas.
+ */
+public final class RepeatedQueryDetector extends EmptyInterceptor
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOGGER = Logger.getLogger(RepeatedQueryDetector.class);
+
+    private static final int DEFAULT_THRESHOLD = 5;
+
+    // bounds memory within long transactions; later fingerprints are not tracked
+    private static final int MAX_FINGERPRINTS = 1024;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+    private static final Pattern NUMERIC_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(?: ?, ?\\?)+");
+
+    // scopes belong to the threads of this JVM, see readResolve
+    private final transient ThreadLocal<Scope> scopes = new ThreadLocal<Scope>()
+    {
+        @Override protected Scope initialValue()
+        {
+            return new Scope();
+        }
+    };
+
+    private volatile int threshold = DEFAULT_THRESHOLD;
+
+    /**
+     * Executions of one statement fingerprint within a transaction above which it is reported; defaults to 5.
+     */
+    public void setThreshold(final int threshold)
+    {
+        Validate.isTrue(threshold > 0, "threshold must be positive!");
+        this.threshold = threshold;
+    }
+
+    public int getThreshold()
+    {
+        return threshold;
+    }
+
+    @Override public String onPrepareStatement(final String sql)
+    {
+        HibernateCounter.STATEMENTS.increment();
+
+        final Scope scope = scopes.get();
+
+        // fingerprinted only within a transaction; repeated writes are a batching concern, not N+1 reads
+        if (scope.transaction && isSelect(sql))
+        {
+            scope.record(fingerprint(sql));
+        }
+
+        return sql;
+    }
+
+    // as the fingerprint would start, without normalising the whole statement
+    private static boolean isSelect(final String sql)
+    {
+        int start = 0;
+
+        while (start < sql.length() && sql.charAt(start) <= ' ')
+        {
+            start++;
+        }
+
+        return sql.regionMatches(true, start, "select", 0, 6);
+    }
+
+    @Override public void afterTransactionBegin(final Transaction tx)
+    {
+        scopes.get().begin();
+    }
+
+    @Override public void afterTransactionCompletion(final Transaction tx)
+    {
+        for (final RepeatedQuery repeatedQuery : getRepeatedQueries())
+        {
+            LOGGER.warn(repeatedQuery);
+        }
+
+        scopes.get().complete();
+    }
+
+    /**
+     * @return statements repeated above the threshold so far in the current thread's transaction.
+     */
+    public List<RepeatedQuery> getRepeatedQueries()
+    {
+        final List<RepeatedQuery> repeatedQueries = new ArrayList<RepeatedQuery>();
+
+        for (final RepeatedQuery query : scopes.get().queries.values())
+        {
+            if (query.count > threshold)
+            {
+                repeatedQueries.add(query);
+            }
+        }
+
+        return repeatedQueries;
+    }
+
+    void enterCall(final String call)
+    {
+        scopes.get().call = call;
+    }
+
+    void exitCall()
+    {
+        scopes.get().call = null;
+    }
+
+    private Object readResolve()
+    {
+        final RepeatedQueryDetector detector = new RepeatedQueryDetector();
+        detector.threshold = threshold;
+        return detector;
+    }
+
+    static String fingerprint(final String sql)
+    {
+        String fingerprint = WHITESPACE.matcher(sql.trim()).replaceAll(" ").toLowerCase();
+        fingerprint = STRING_LITERAL.matcher(fingerprint).replaceAll("?");
+        fingerprint = NUMERIC_LITERAL.matcher(fingerprint).replaceAll("?");
+        return PARAMETER_LIST.matcher(fingerprint).replaceAll("?");
+    }
+
+    private static final class Scope
+    {
+        private final Map<String, RepeatedQuery> queries = new LinkedHashMap<String, RepeatedQuery>();
+
+        private String call;
+
+        private boolean transaction;
+
+        private void record(final String fingerprint)
+        {
+            RepeatedQuery query = queries.get(fingerprint);
+
+            if (query == null)
+            {
+                if (queries.size() == MAX_FINGERPRINTS)
+                {
+                    return;
+                }
+
+                query = new RepeatedQuery(fingerprint, call);
+                queries.put(fingerprint, query);
+            }
+
+            query.count++;
+        }
+
+        // a transaction may begin and complete within a service call, which still originates its statements
+        private void begin()
+        {
+            queries.clear();
+            transaction = true;
+        }
+
+        private void complete()
+        {
+            queries.clear();
+            transaction = false;
+        }
+    }
+
+    /**
+     * A statement fingerprint and the number of times it was executed within one transaction.
+     */
+    public static final class RepeatedQuery
+    {
+        private final String fingerprint;
+
+        private final String call;
+
+        private int count;
+
+        private RepeatedQuery(final String fingerprint, final String call)
+        {
+            this.fingerprint = fingerprint;
+            this.call = call;
+        }
+
+        public String getFingerprint()
+        {
+            return fingerprint;
+        }
+
+        /**
+         * @return the profiled service call during the first execution, e.g.
+         * <code>HibernateServiceImpl.find(Parent)</code>; <code>null</code> when first executed outside one, e.g. by a
+         * lazy load after the call returned.
+         */
+        public String getCall()
+        {
+            return call;
+        }
+
+        public int getCount()
+        {
+            return count;
+        }
+
+        @Override public String toString()
+        {
+            return "N+1 query: " + count + " executions in one transaction" + (call == null ? "" : " during " + call) + ": " + fingerprint;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency distribution over a rolling window made up of a ring of fixed length intervals. Recording never locks; the
+ * thread first to reach a new interval recycles the oldest one, so samples racing that reset may be lost.
+ */
+final class RollingLatencyHistogram
+{
+    private final long origin = ProfilingClock.now();
+
+    private final long intervalNanos;
+
+    private final LatencyHistogram[] intervals;
+
+    private final AtomicLongArray epochs;
+
+    RollingLatencyHistogram(final long intervalNanos, final int intervalCount)
+    {
+        this.intervalNanos = intervalNanos;
+        this.intervals = new LatencyHistogram[intervalCount];
+        this.epochs = new AtomicLongArray(intervalCount);
+
+        for (int i = 0; i < intervalCount; i++)
+        {
+            intervals[i] = new LatencyHistogram();
+            epochs.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    void record(final long nanos)
+    {
+        final long epoch = currentEpoch();
+        final int index = (int) (epoch % intervals.length);
+        final long intervalEpoch = epochs.get(index);
+
+        if (intervalEpoch < epoch && epochs.compareAndSet(index, intervalEpoch, epoch))
+        {
+            intervals[index].reset();
+        }
+
+        intervals[index].record(nanos);
+    }
+
+    LatencySnapshot snapshot()
+    {
+        final long oldestEpoch = currentEpoch() - intervals.length;
+        final long[] counts = new long[LatencyHistogram.BUCKETS];
+        long max = 0;
+
+        for (int i = 0; i < intervals.length; i++)
+        {
+            if (epochs.get(i) > oldestEpoch)
+            {
+                intervals[i].addTo(counts);
+                max = Math.max(max, intervals[i].getMax());
+            }
+        }
+
+        return new LatencySnapshot(counts, max);
+    }
+
+    long getWindowNanos()
+    {
+        return intervalNanos * intervals.length;
+    }
+
+    void reset()
+    {
+        for (int i = 0; i < intervals.length; i++)
+        {
+            epochs.set(i, Long.MIN_VALUE);
+            intervals[i].reset();
+        }
+    }
+
+    private long currentEpoch()
+    {
+        return ProfilingClock.elapsedSince(origin) / intervalNanos;
+    }
+}
\ No newline at end of file
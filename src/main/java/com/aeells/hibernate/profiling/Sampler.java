@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.apache.commons.lang.Validate;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which profiled calls produce a detailed record: those at or above the slow call threshold are then sampled
+ * by rate, subject to an optional cap on records per second. Each thread draws from its own random source and the cap
+ * is tracked per second without locks.
+ */
+final class Sampler
+{
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final ThreadLocal<Random> random = new ThreadLocal<Random>()
+    {
+        @Override protected Random initialValue()
+        {
+            return new Random();
+        }
+    };
+
+    private final AtomicLong currentSecond = new AtomicLong();
+
+    private final AtomicInteger sampledThisSecond = new AtomicInteger();
+
+    private volatile double sampleRate = 1d;
+
+    private volatile int maxSampledPerSecond;
+
+    private volatile long slowCallThresholdNanos;
+
+    double getSampleRate()
+    {
+        return sampleRate;
+    }
+
+    void setSampleRate(final double sampleRate)
+    {
+        Validate.isTrue(sampleRate >= 0d && sampleRate <= 1d, "sample rate must be between 0 and 1!");
+        this.sampleRate = sampleRate;
+    }
+
+    int getMaxSampledPerSecond()
+    {
+        return maxSampledPerSecond;
+    }
+
+    void setMaxSampledPerSecond(final int maxSampledPerSecond)
+    {
+        Validate.isTrue(maxSampledPerSecond >= 0, "max sampled per second cannot be negative!");
+        this.maxSampledPerSecond = maxSampledPerSecond;
+    }
+
+    long getSlowCallThresholdNanos()
+    {
+        return slowCallThresholdNanos;
+    }
+
+    void setSlowCallThresholdNanos(final long slowCallThresholdNanos)
+    {
+        Validate.isTrue(slowCallThresholdNanos >= 0, "slow call threshold cannot be negative!");
+        this.slowCallThresholdNanos = slowCallThresholdNanos;
+    }
+
+    /**
+     * @param profiledClass whose own threshold, when set, overrides the global threshold; may be <code>null</code>.
+     */
+    boolean isSlow(final ProfiledClass profiledClass, final long nanos)
+    {
+        final long threshold = profiledClass == null || profiledClass.getSlowCallThresholdNanos() < 0 ? slowCallThresholdNanos : profiledClass.getSlowCallThresholdNanos();
+        return nanos >= threshold;
+    }
+
+    /**
+     * @param profiledClass whose own sample rate, when set, overrides the global rate; may be <code>null</code>.
+     */
+    boolean sample(final ProfiledClass profiledClass)
+    {
+        final double rate = profiledClass == null || profiledClass.getSampleRate() < 0d ? sampleRate : profiledClass.getSampleRate();
+
+        if (rate < 1d && (rate <= 0d || random.get().nextDouble() >= rate))
+        {
+            return false;
+        }
+
+        return maxSampledPerSecond <= 0 || withinCap();
+    }
+
+    private boolean withinCap()
+    {
+        final long second = ProfilingClock.now() / NANOS_PER_SECOND;
+        final long previousSecond = currentSecond.get();
+
+        if (second != previousSecond && currentSecond.compareAndSet(previousSecond, second))
+        {
+            sampledThisSecond.set(0);
+        }
+
+        return sampledThisSecond.incrementAndGet() <= maxSampledPerSecond;
+    }
+}
\ No newline at end of file
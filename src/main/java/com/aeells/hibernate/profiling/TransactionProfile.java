@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Profiled calls made within one Spring managed transaction, bound to the transaction as a resource keyed by the
+ * interceptor and rolled up into a single summary once the transaction completes. Flushing and committing, or rolling
+ * back, is timed from the first completion callback, covering the flush of a Hibernate session on commit.
+ */
+final class TransactionProfile extends TransactionSynchronizationAdapter
+{
+    private final HibernateProfilingInterceptor interceptor;
+
+    private final String name;
+
+    private final Map<String, int[]> calls = new LinkedHashMap<String, int[]>();
+
+    private int callCount;
+
+    private long callNanos;
+
+    private boolean completing;
+
+    private long completionStart;
+
+    private TransactionProfile(final HibernateProfilingInterceptor interceptor, final String name)
+    {
+        this.interceptor = interceptor;
+        this.name = name;
+    }
+
+    /**
+     * @return the profile of the current transaction, begun on first use; <code>null</code> outside a transaction.
+     */
+    static TransactionProfile current(final HibernateProfilingInterceptor interceptor)
+    {
+        if (!TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            return null;
+        }
+
+        TransactionProfile profile = (TransactionProfile) TransactionSynchronizationManager.getResource(interceptor);
+
+        if (profile == null)
+        {
+            profile = new TransactionProfile(interceptor, TransactionSynchronizationManager.getCurrentTransactionName());
+            TransactionSynchronizationManager.bindResource(interceptor, profile);
+            TransactionSynchronizationManager.registerSynchronization(profile);
+        }
+
+        return profile;
+    }
+
+    void record(final String method, final String entity, final long nanos)
+    {
+        final String key = method + ":" + entity;
+        final int[] count = calls.get(key);
+
+        if (count == null)
+        {
+            calls.put(key, new int[]{1});
+        }
+        else
+        {
+            count[0]++;
+        }
+
+        callCount++;
+        callNanos += nanos;
+    }
+
+    /**
+     * @return the transaction name, usually the <code>@Transactional</code> method, as <code>Class.method</code>.
+     */
+    String getName()
+    {
+        if (name == null)
+        {
+            return "-";
+        }
+
+        final int method = name.lastIndexOf('.');
+        return method < 0 ? name : name.substring(name.lastIndexOf('.', method - 1) + 1);
+    }
+
+    int getCallCount()
+    {
+        return callCount;
+    }
+
+    long getCallNanos()
+    {
+        return callNanos;
+    }
+
+    /**
+     * @return calls per <code>method:Entity</code>, e.g. <code>findById:Parent*3,find:Child*1</code>.
+     */
+    String getBreakdown()
+    {
+        final StringBuilder sb = new StringBuilder();
+
+        for (final Map.Entry<String, int[]> call : calls.entrySet())
+        {
+            sb.append(sb.length() == 0 ? "" : ",").append(call.getKey()).append('*').append(call.getValue()[0]);
+        }
+
+        return sb.toString();
+    }
+
+    @Override public void suspend()
+    {
+        TransactionSynchronizationManager.unbindResourceIfPossible(interceptor);
+    }
+
+    @Override public void resume()
+    {
+        TransactionSynchronizationManager.bindResource(interceptor, this);
+    }
+
+    @Override public void beforeCommit(final boolean readOnly)
+    {
+        startCompletion();
+    }
+
+    @Override public void beforeCompletion()
+    {
+        startCompletion();
+    }
+
+    @Override public void afterCompletion(final int status)
+    {
+        TransactionSynchronizationManager.unbindResourceIfPossible(interceptor);
+        interceptor.publishTransaction(this, status == TransactionSynchronization.STATUS_COMMITTED ? "commit" : status == TransactionSynchronization.STATUS_ROLLED_BACK ? "rollback" : "unknown",
+                                       completing ? ProfilingClock.elapsedSince(completionStart) : 0L);
+    }
+
+    private void startCompletion()
+    {
+        if (!completing)
+        {
+            completing = true;
+            completionStart = ProfilingClock.now();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling.analysis;
+
+import com.aeells.hibernate.profiling.ProfileLogReader;
+import com.aeells.hibernate.profiling.ProfileRecord;
+import com.aeells.hibernate.profiling.ProfileRecordReader;
+import com.aeells.hibernate.profiling.binary.BinaryProfileReader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Command line analysis of profile logs, text (optionally gzipped) or binary, in a single streaming pass per file.
+ * Files are analysed in parallel and their summaries merged, reporting the slowest operations, per method percentiles
+ * and per entity call volumes.
+ * <p/>
+ * <code>java com.aeells.hibernate.profiling.analysis.ProfileLogAnalyzer [-top N] [-threads N] file|directory...</code>
+ */
+public final class ProfileLogAnalyzer
+{
+    private static final int DEFAULT_TOP = 20;
+
+    private final int threads;
+
+    public ProfileLogAnalyzer(final int threads)
+    {
+        this.threads = threads;
+    }
+
+    public static void main(final String[] args) throws Exception
+    {
+        int top = DEFAULT_TOP;
+        int threads = Runtime.getRuntime().availableProcessors();
+        final List<File> files = new ArrayList<File>();
+
+        for (int i = 0; i < args.length; i++)
+        {
+            if ("-top".equals(args[i]) && i + 1 < args.length)
+            {
+                top = Integer.parseInt(args[++i]);
+            }
+            else if ("-threads".equals(args[i]) && i + 1 < args.length)
+            {
+                threads = Integer.parseInt(args[++i]);
+            }
+            else
+            {
+                addFiles(files, new File(args[i]));
+            }
+        }
+
+        if (files.isEmpty())
+        {
+            System.err.println("usage: ProfileLogAnalyzer [-top N] [-threads N] file|directory...");
+            System.exit(1);
+        }
+
+        new ProfileLogAnalyzer(threads).analyze(files).report(System.out, top);
+    }
+
+    ProfileSummary analyze(final List<File> files) throws IOException, InterruptedException
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, files.size())));
+
+        try
+        {
+            final List<Future<ProfileSummary>> summaries = new ArrayList<Future<ProfileSummary>>();
+
+            for (final File file : files)
+            {
+                summaries.add(executor.submit(new Callable<ProfileSummary>()
+                {
+                    @Override public ProfileSummary call() throws IOException
+                    {
+                        return summarise(file);
+                    }
+                }));
+            }
+
+            final ProfileSummary summary = new ProfileSummary();
+
+            for (final Future<ProfileSummary> fileSummary : summaries)
+            {
+                try
+                {
+                    summary.merge(fileSummary.get());
+                }
+                catch (final ExecutionException e)
+                {
+                    throw new IOException("unable to analyse profile log: " + e.getCause(), e.getCause());
+                }
+            }
+
+            return summary;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ProfileSummary summarise(final File file) throws IOException
+    {
+        final ProfileSummary summary = new ProfileSummary();
+        final ProfileRecordReader reader = open(file);
+
+        try
+        {
+            ProfileRecord record;
+            while ((record = reader.next()) != null)
+            {
+                summary.add(record);
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        return summary;
+    }
+
+    private static ProfileRecordReader open(final File file) throws IOException
+    {
+        if (file.getName().endsWith(".hpb"))
+        {
+            return new BinaryProfileReader(new File[] {file});
+        }
+
+        final InputStream in = new FileInputStream(file);
+        return new ProfileLogReader(new InputStreamReader(file.getName().endsWith(".gz") ? new GZIPInputStream(in) : in, "UTF-8"));
+    }
+
+    private static void addFiles(final List<File> files, final File file)
+    {
+        if (file.isDirectory())
+        {
+            final File[] children = file.listFiles();
+
+            if (children != null)
+            {
+                Arrays.sort(children);
+                for (final File child : children)
+                {
+                    addFiles(files, child);
+                }
+            }
+        }
+        else
+        {
+            files.add(file);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,451 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling.analysis;
+
+import com.aeells.hibernate.profiling.HibernateCounter;
+import com.aeells.hibernate.profiling.LatencyHistogram;
+import com.aeells.hibernate.profiling.ProfileRecord;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aggregates profile records per <code>method|Entity</code> into fixed size histograms, so memory is bounded by the
+ * number of distinct operations rather than the number of records. Transaction and flush records roll up the calls
+ * they span, so they are kept apart per <code>Service|method|Entity</code> rather than counted twice against the same
+ * operations and entities. Not thread safe: each worker keeps its own summary and summaries are merged.
+ */
+final class ProfileSummary
+{
+    private static final String NO_ENTITY = "-";
+
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    private final Map<String, Aggregate> operations = new HashMap<String, Aggregate>();
+
+    private final Map<String, Aggregate> rollUps = new HashMap<String, Aggregate>();
+
+    private long records;
+
+    void add(final ProfileRecord record)
+    {
+        final String key = record.getMethod() + "|" + (record.getEntity() == null ? NO_ENTITY : record.getEntity());
+
+        if (isRollUp(record.getService()))
+        {
+            aggregateOf(rollUps, record.getService() + "|" + key).add(record);
+        }
+        else
+        {
+            aggregateOf(operations, key).add(record);
+        }
+
+        records++;
+    }
+
+    private static boolean isRollUp(final String service)
+    {
+        return "Transaction".equals(service) || "Flush".equals(service);
+    }
+
+    private static Aggregate aggregateOf(final Map<String, Aggregate> aggregates, final String key)
+    {
+        Aggregate aggregate = aggregates.get(key);
+
+        if (aggregate == null)
+        {
+            aggregate = new Aggregate(key);
+            aggregates.put(key, aggregate);
+        }
+
+        return aggregate;
+    }
+
+    void merge(final ProfileSummary summary)
+    {
+        merge(operations, summary.operations);
+        merge(rollUps, summary.rollUps);
+        records += summary.records;
+    }
+
+    private static void merge(final Map<String, Aggregate> aggregates, final Map<String, Aggregate> others)
+    {
+        for (final Aggregate other : others.values())
+        {
+            final Aggregate aggregate = aggregates.get(other.name);
+
+            if (aggregate == null)
+            {
+                aggregates.put(other.name, other);
+            }
+            else
+            {
+                aggregate.merge(other);
+            }
+        }
+    }
+
+    long getRecords()
+    {
+        return records;
+    }
+
+    Aggregate getOperation(final String key)
+    {
+        return operations.get(key);
+    }
+
+    /**
+     * @return the transactions or flushes of a <code>Service|method|Entity</code>, e.g. <code>Flush|flush|Parent</code>.
+     */
+    Aggregate getRollUp(final String key)
+    {
+        return rollUps.get(key);
+    }
+
+    void report(final PrintStream out, final int top)
+    {
+        out.println("records: " + records);
+
+        final List<Aggregate> slowest = new ArrayList<Aggregate>(operations.values());
+        Collections.sort(slowest, new Comparator<Aggregate>()
+        {
+            @Override public int compare(final Aggregate a, final Aggregate b)
+            {
+                final long difference = b.percentile(0.99) - a.percentile(0.99);
+                return difference == 0 ? a.name.compareTo(b.name) : (difference > 0 ? 1 : -1);
+            }
+        });
+
+        out.println();
+        out.println("slowest operations by p99 (top " + top + ", ms)");
+        printLatencyTable(out, slowest.subList(0, Math.min(top, slowest.size())));
+
+        final List<Aggregate> counted = new ArrayList<Aggregate>();
+        for (final Aggregate aggregate : slowest)
+        {
+            if (aggregate.counted > 0 && counted.size() < top)
+            {
+                counted.add(aggregate);
+            }
+        }
+
+        if (!counted.isEmpty())
+        {
+            out.println();
+            out.println("hibernate activity of the slowest operations (mean per call)");
+            printCounterTable(out, counted);
+        }
+
+        final List<Aggregate> connected = new ArrayList<Aggregate>();
+        for (final Aggregate aggregate : slowest)
+        {
+            if (aggregate.connected > 0 && connected.size() < top)
+            {
+                connected.add(aggregate);
+            }
+        }
+
+        if (!connected.isEmpty())
+        {
+            out.println();
+            out.println("connection use of the slowest operations (ms)");
+            out.println(String.format("%-40s %12s %12s %12s %12s %12s", "operation", "connected", "acquire", "max acquire", "held", "max waiting"));
+            for (final Aggregate aggregate : connected)
+            {
+                out.println(String.format("%-40s %12d %12.3f %12.3f %12.3f %12d", aggregate.name, aggregate.connected,
+                                          aggregate.acquireNanos / NANOS_PER_MILLI / aggregate.connected, aggregate.maxAcquireNanos / NANOS_PER_MILLI,
+                                          aggregate.heldNanos / NANOS_PER_MILLI / aggregate.connected, aggregate.maxWaiting));
+            }
+        }
+
+        final List<Aggregate> failed = new ArrayList<Aggregate>();
+        for (final Aggregate aggregate : operations.values())
+        {
+            if (aggregate.errors > 0)
+            {
+                failed.add(aggregate);
+            }
+        }
+
+        if (!failed.isEmpty())
+        {
+            Collections.sort(failed, new Comparator<Aggregate>()
+            {
+                @Override public int compare(final Aggregate a, final Aggregate b)
+                {
+                    return b.errorNanos == a.errorNanos ? a.name.compareTo(b.name) : (b.errorNanos > a.errorNanos ? 1 : -1);
+                }
+            });
+
+            out.println();
+            out.println("failed operations by time lost (top " + top + ", ms)");
+            out.println(String.format("%-40s %12s %8s %10s %10s %14s", "operation", "errors", "error %", "mean", "max", "total"));
+            for (final Aggregate aggregate : failed.subList(0, Math.min(top, failed.size())))
+            {
+                out.println(String.format("%-40s %12d %8.2f %10.3f %10.3f %14.3f", aggregate.name, aggregate.errors,
+                                          100d * aggregate.errors / (aggregate.count + aggregate.errors),
+                                          aggregate.errorNanos / NANOS_PER_MILLI / aggregate.errors, aggregate.maxErrorNanos / NANOS_PER_MILLI,
+                                          aggregate.errorNanos / NANOS_PER_MILLI));
+            }
+        }
+
+        if (!rollUps.isEmpty())
+        {
+            out.println();
+            out.println("transactions and flushes (ms)");
+            printLatencyTable(out, new ArrayList<Aggregate>(new TreeMap<String, Aggregate>(rollUps).values()));
+        }
+
+        out.println();
+        out.println("per method percentiles (ms)");
+        printLatencyTable(out, new ArrayList<Aggregate>(groupBy(0).values()));
+
+        out.println();
+        out.println("per entity volumes");
+        out.println(String.format("%-40s %12s %12s %14s", "entity", "calls", "errors", "total ms"));
+        for (final Aggregate entity : groupBy(1).values())
+        {
+            out.println(String.format("%-40s %12d %12d %14.3f", entity.name, entity.count, entity.errors, (entity.totalNanos + entity.errorNanos) / NANOS_PER_MILLI));
+        }
+    }
+
+    private Map<String, Aggregate> groupBy(final int keyPart)
+    {
+        final Map<String, Aggregate> groups = new TreeMap<String, Aggregate>();
+
+        for (final Aggregate operation : operations.values())
+        {
+            final String name = operation.name.split("\\|")[keyPart];
+            Aggregate group = groups.get(name);
+
+            if (group == null)
+            {
+                group = new Aggregate(name);
+                groups.put(name, group);
+            }
+
+            group.merge(operation);
+        }
+
+        return groups;
+    }
+
+    private static void printLatencyTable(final PrintStream out, final List<Aggregate> aggregates)
+    {
+        out.println(String.format("%-40s %12s %10s %10s %10s %10s %10s %10s", "operation", "calls", "mean", "p50", "p95", "p99", "max", "rows"));
+
+        for (final Aggregate aggregate : aggregates)
+        {
+            out.println(String.format("%-40s %12d %10.3f %10.3f %10.3f %10.3f %10.3f %10.1f", aggregate.name, aggregate.count,
+                                      aggregate.count == 0 ? 0d : aggregate.totalNanos / NANOS_PER_MILLI / aggregate.count,
+                                      aggregate.percentile(0.50) / NANOS_PER_MILLI, aggregate.percentile(0.95) / NANOS_PER_MILLI,
+                                      aggregate.percentile(0.99) / NANOS_PER_MILLI, aggregate.maxNanos / NANOS_PER_MILLI,
+                                      aggregate.getMeanRows()));
+        }
+    }
+
+    private static void printCounterTable(final PrintStream out, final List<Aggregate> aggregates)
+    {
+        final StringBuilder header = new StringBuilder(String.format("%-40s", "operation"));
+        for (final HibernateCounter counter : HibernateCounter.values())
+        {
+            header.append(String.format(" %8s", counter.getLabel()));
+        }
+        out.println(header);
+
+        for (final Aggregate aggregate : aggregates)
+        {
+            final StringBuilder row = new StringBuilder(String.format("%-40s", aggregate.name));
+            for (final HibernateCounter counter : HibernateCounter.values())
+            {
+                row.append(String.format(" %8.1f", aggregate.meanCounter(counter)));
+            }
+            out.println(row);
+        }
+    }
+
+    static final class Aggregate
+    {
+        private final String name;
+
+        private final long[] buckets = new long[LatencyHistogram.BUCKETS];
+
+        private long count;
+
+        private long totalNanos;
+
+        private long maxNanos;
+
+        private long lists;
+
+        private long totalRows;
+
+        private long counted;
+
+        private long connected;
+
+        private long acquireNanos;
+
+        private long maxAcquireNanos;
+
+        private long heldNanos;
+
+        private long maxWaiting;
+
+        private long errors;
+
+        private long errorNanos;
+
+        private long maxErrorNanos;
+
+        private final long[] counterTotals = new long[HibernateCounter.COUNT];
+
+        private Aggregate(final String name)
+        {
+            this.name = name;
+        }
+
+        long getCount()
+        {
+            return count;
+        }
+
+        long getMaxNanos()
+        {
+            return maxNanos;
+        }
+
+        /**
+         * @return mean time to acquire a connection, over the calls which acquired or released one.
+         */
+        double getMeanAcquireNanos()
+        {
+            return connected == 0 ? 0d : (double) acquireNanos / connected;
+        }
+
+        long getMaxWaiting()
+        {
+            return maxWaiting;
+        }
+
+        long getErrors()
+        {
+            return errors;
+        }
+
+        long getErrorNanos()
+        {
+            return errorNanos;
+        }
+
+        /**
+         * @return mean rows of list results, the measure to weigh latency against when tuning page sizes.
+         */
+        double getMeanRows()
+        {
+            return lists == 0 ? 0d : (double) totalRows / lists;
+        }
+
+        double meanCounter(final HibernateCounter counter)
+        {
+            return counted == 0 ? 0d : (double) counterTotals[counter.ordinal()] / counted;
+        }
+
+        long percentile(final double percentile)
+        {
+            return LatencyHistogram.percentile(buckets, count, percentile, maxNanos);
+        }
+
+        private void add(final ProfileRecord record)
+        {
+            final long nanos = record.getDurationNanos();
+
+            if (record.getAcquireNanos() >= 0)
+            {
+                connected++;
+                acquireNanos += record.getAcquireNanos();
+                maxAcquireNanos = Math.max(maxAcquireNanos, record.getAcquireNanos());
+                heldNanos += record.getHeldNanos();
+                maxWaiting = Math.max(maxWaiting, record.getWaiting());
+            }
+
+            // failures are counted apart so that they do not distort the latency of successful calls
+            if (record.isFailed())
+            {
+                errors++;
+                errorNanos += nanos;
+                maxErrorNanos = Math.max(maxErrorNanos, nanos);
+                return;
+            }
+
+            if (record.getRowCount() >= 0)
+            {
+                lists++;
+                totalRows += record.getRowCount();
+            }
+
+            if (record.hasCounters())
+            {
+                counted++;
+
+                for (final HibernateCounter counter : HibernateCounter.values())
+                {
+                    counterTotals[counter.ordinal()] += record.getCounter(counter);
+                }
+            }
+
+            buckets[LatencyHistogram.bucketOf(nanos)]++;
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        private void merge(final Aggregate other)
+        {
+            for (int i = 0; i < buckets.length; i++)
+            {
+                buckets[i] += other.buckets[i];
+            }
+
+            for (int i = 0; i < counterTotals.length; i++)
+            {
+                counterTotals[i] += other.counterTotals[i];
+            }
+
+            lists += other.lists;
+            totalRows += other.totalRows;
+            counted += other.counted;
+            connected += other.connected;
+            acquireNanos += other.acquireNanos;
+            maxAcquireNanos = Math.max(maxAcquireNanos, other.maxAcquireNanos);
+            heldNanos += other.heldNanos;
+            maxWaiting = Math.max(maxWaiting, other.maxWaiting);
+            errors += other.errors;
+            errorNanos += other.errorNanos;
+            maxErrorNanos = Math.max(maxErrorNanos, other.maxErrorNanos);
+            count += other.count;
+            totalNanos += other.totalNanos;
+            maxNanos = Math.max(maxNanos, other.maxNanos);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling.binary;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Layout shared by {@link BinaryProfileWriter} and {@link BinaryProfileReader}.
+ * <p/>
+ * A segment starts with a header of magic, version and base timestamp, followed by records each led by a type byte.
+ * Service, method and entity names are interned per segment: a dictionary record assigns an id to a name before its
+ * first use, so every segment can be read on its own. Call records hold the timestamp as a delta from the previous
+ * record, the duration in nanoseconds, dictionary ids and the identifiers, packed to bytes when they are hexadecimal,
+ * then varint flags for the optional row count, result size, call count, commit time, <code>HibernateCounter</code> deltas,
+ * dictionary id of the exception type of a failed call, connection acquire time, hold time and waiting callers, time
+ * to the first row of a streamed result and identifiers requested, session hits and queries of a multi-get which follow.
+ * Integers are unsigned LEB128 varints. Unused space is zero filled, which reads as the end of the segment.
+ */
+final class BinaryProfileFormat
+{
+    static final int MAGIC = 0x48505246;
+
+    static final short VERSION = 1;
+
+    static final int HEADER_SIZE = 4 + 2 + 8;
+
+    static final byte END = 0;
+
+    static final byte DICTIONARY = 1;
+
+    static final byte CALL = 2;
+
+    static final int HAS_ROWS = 1;
+
+    static final int HAS_BYTES = 2;
+
+    static final int HAS_COUNTERS = 4;
+
+    static final int HAS_CALLS = 8;
+
+    static final int HAS_COMMIT = 16;
+
+    static final int HAS_ERROR = 32;
+
+    static final int HAS_CONNECTION = 64;
+
+    static final int HAS_FIRST_ROW = 128;
+
+    static final int HAS_MULTI_GET = 256;
+
+    static final String SUFFIX = ".hpb";
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private BinaryProfileFormat()
+    {
+    }
+
+    static String segmentName(final String prefix, final long sequence)
+    {
+        return String.format("%s-%08d%s", prefix, sequence, SUFFIX);
+    }
+
+    static File[] segments(final File directory, final String prefix)
+    {
+        final File[] segments = directory.listFiles(new FilenameFilter()
+        {
+            @Override public boolean accept(final File dir, final String name)
+            {
+                return name.startsWith(prefix + "-") && name.endsWith(SUFFIX);
+            }
+        });
+
+        if (segments == null)
+        {
+            return new File[0];
+        }
+
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    static long sequenceOf(final File segment, final String prefix)
+    {
+        final String name = segment.getName();
+        return Long.parseLong(name.substring(prefix.length() + 1, name.length() - SUFFIX.length()));
+    }
+
+    static int varLongSize(final long value)
+    {
+        int size = 1;
+        for (long remaining = value >>> 7; remaining != 0; remaining >>>= 7)
+        {
+            size++;
+        }
+        return size;
+    }
+
+    static void putVarLong(final ByteBuffer buffer, final long value)
+    {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0)
+        {
+            buffer.put((byte) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        buffer.put((byte) remaining);
+    }
+
+    static long getVarLong(final ByteBuffer buffer)
+    {
+        long value = 0;
+        int shift = 0;
+        byte b;
+
+        do
+        {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+
+        return value;
+    }
+
+    static long zigZag(final long value)
+    {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(final long value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static boolean isPackableHex(final String value)
+    {
+        if (value.length() == 0 || value.length() % 2 != 0)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < value.length(); i++)
+        {
+            final char c = value.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f')))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    static byte[] packHex(final String value)
+    {
+        final byte[] packed = new byte[value.length() / 2];
+        for (int i = 0; i < packed.length; i++)
+        {
+            packed[i] = (byte) ((Character.digit(value.charAt(i * 2), 16) << 4) | Character.digit(value.charAt(i * 2 + 1), 16));
+        }
+        return packed;
+    }
+
+    static String unpackHex(final byte[] packed)
+    {
+        final char[] value = new char[packed.length * 2];
+        for (int i = 0; i < packed.length; i++)
+        {
+            value[i * 2] = HEX[(packed[i] >> 4) & 0xF];
+            value[i * 2 + 1] = HEX[packed[i] & 0xF];
+        }
+        return new String(value);
+    }
+}
\ No newline at end of file
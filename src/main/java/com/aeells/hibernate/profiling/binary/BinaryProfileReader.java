@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling.binary;
+
+import com.aeells.hibernate.profiling.HibernateCounter;
+import com.aeells.hibernate.profiling.ProfileRecord;
+import com.aeells.hibernate.profiling.ProfileRecordReader;
+import org.apache.commons.lang.Validate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.CALL;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.DICTIONARY;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.END;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.HAS_BYTES;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.HAS_CALLS;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.HAS_COMMIT;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.HAS_CONNECTION;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.HAS_COUNTERS;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.HAS_ERROR;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.HAS_FIRST_ROW;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.HAS_MULTI_GET;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.HAS_ROWS;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.MAGIC;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.UTF8;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.VERSION;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.getVarLong;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.segments;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.unZigZag;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.unpackHex;
+
+/**
+ * Streams {@link ProfileRecord}s back from segments written by {@link BinaryProfileWriter}, one record at a time.
+ * Segments are memory mapped read only so that only the pages being read are brought into memory.
+ */
+public final class BinaryProfileReader implements ProfileRecordReader
+{
+    private final File[] segments;
+
+    private final List<String> dictionary = new ArrayList<String>();
+
+    private int nextSegment;
+
+    private MappedByteBuffer buffer;
+
+    private long lastTimestamp;
+
+    /**
+     * Reads every segment written with the default prefix to <code>directory</code>, oldest first.
+     */
+    public BinaryProfileReader(final File directory)
+    {
+        this(segments(directory, BinaryProfileWriter.DEFAULT_PREFIX));
+    }
+
+    public BinaryProfileReader(final File... segments)
+    {
+        Validate.notNull(segments, "segments cannot be null!");
+        this.segments = segments.clone();
+    }
+
+    @Override public ProfileRecord next() throws IOException
+    {
+        while (true)
+        {
+            if (buffer == null || !buffer.hasRemaining())
+            {
+                if (nextSegment == segments.length)
+                {
+                    return null;
+                }
+
+                openSegment(segments[nextSegment++]);
+                continue;
+            }
+
+            final byte type = buffer.get();
+
+            if (type == DICTIONARY)
+            {
+                readDictionaryEntry();
+            }
+            else if (type == CALL)
+            {
+                return readCall();
+            }
+            else if (type == END)
+            {
+                buffer = null;
+            }
+            else
+            {
+                throw new IOException("corrupt profile segment: " + segments[nextSegment - 1]);
+            }
+        }
+    }
+
+    @Override public void close()
+    {
+        buffer = null;
+        nextSegment = segments.length;
+    }
+
+    private void openSegment(final File segment) throws IOException
+    {
+        final RandomAccessFile file = new RandomAccessFile(segment, "r");
+
+        try
+        {
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        }
+        finally
+        {
+            file.close();
+        }
+
+        if (buffer.remaining() < BinaryProfileFormat.HEADER_SIZE || buffer.getInt() != MAGIC)
+        {
+            throw new IOException("not a profile segment: " + segment);
+        }
+
+        final short version = buffer.getShort();
+
+        if (version != VERSION)
+        {
+            throw new IOException("unsupported profile segment version " + version + ": " + segment);
+        }
+
+        lastTimestamp = buffer.getLong();
+        dictionary.clear();
+    }
+
+    private void readDictionaryEntry()
+    {
+        final int id = (int) getVarLong(buffer);
+        final byte[] bytes = new byte[(int) getVarLong(buffer)];
+        buffer.get(bytes);
+
+        while (dictionary.size() <= id)
+        {
+            dictionary.add(null);
+        }
+
+        dictionary.set(id, new String(bytes, UTF8));
+    }
+
+    private ProfileRecord readCall()
+    {
+        final long timestamp = lastTimestamp + unZigZag(getVarLong(buffer));
+        final long duration = getVarLong(buffer);
+        final String service = dictionary.get((int) getVarLong(buffer));
+        final String method = dictionary.get((int) getVarLong(buffer));
+        final int entity = (int) getVarLong(buffer);
+        final long identifierHeader = getVarLong(buffer);
+        final byte[] identifierBytes = new byte[(int) (identifierHeader >>> 1)];
+        buffer.get(identifierBytes);
+
+        final int flags = (int) getVarLong(buffer);
+        final long rowCount = (flags & HAS_ROWS) != 0 ? getVarLong(buffer) : -1L;
+        final long resultBytes = (flags & HAS_BYTES) != 0 ? getVarLong(buffer) : -1L;
+        final long callCount = (flags & HAS_CALLS) != 0 ? getVarLong(buffer) : -1L;
+        final long commitNanos = (flags & HAS_COMMIT) != 0 ? getVarLong(buffer) : -1L;
+        long[] counters = null;
+
+        if ((flags & HAS_COUNTERS) != 0)
+        {
+            counters = new long[HibernateCounter.COUNT];
+
+            for (int i = 0; i < counters.length; i++)
+            {
+                counters[i] = unZigZag(getVarLong(buffer));
+            }
+        }
+
+        final String error = (flags & HAS_ERROR) != 0 ? dictionary.get((int) getVarLong(buffer)) : null;
+        final boolean connected = (flags & HAS_CONNECTION) != 0;
+        final long acquireNanos = connected ? getVarLong(buffer) : -1L;
+        final long heldNanos = connected ? getVarLong(buffer) : -1L;
+        final long waiting = connected ? getVarLong(buffer) : -1L;
+        final long firstRowNanos = (flags & HAS_FIRST_ROW) != 0 ? getVarLong(buffer) : -1L;
+        final boolean multiGet = (flags & HAS_MULTI_GET) != 0;
+        final long requested = multiGet ? getVarLong(buffer) : -1L;
+        final long sessionHits = multiGet ? getVarLong(buffer) : -1L;
+        final long queries = multiGet ? getVarLong(buffer) : -1L;
+        lastTimestamp = timestamp;
+
+        final String identifiers = (identifierHeader & 1) == 1 ? unpackHex(identifierBytes) : new String(identifierBytes, UTF8);
+        return new ProfileRecord(timestamp, service, method, entity == 0 ? null : dictionary.get(entity - 1), entity == 0 ? null : identifiers, duration,
+                                 rowCount, resultBytes, firstRowNanos, requested, sessionHits, queries, callCount, commitNanos, acquireNanos, heldNanos, waiting,
+                                 counters, error);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,371 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling.binary;
+
+import com.aeells.hibernate.profiling.HibernateCounter;
+import com.aeells.hibernate.profiling.ProfileEvent;
+import com.aeells.hibernate.profiling.ProfileEventHandler;
+import org.apache.commons.lang.Validate;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.CALL;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.DICTIONARY;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.HAS_BYTES;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.HAS_CALLS;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.HAS_COMMIT;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.HAS_CONNECTION;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.HAS_COUNTERS;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.HAS_ERROR;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.HAS_FIRST_ROW;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.HAS_MULTI_GET;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.HAS_ROWS;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.HEADER_SIZE;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.MAGIC;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.UTF8;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.VERSION;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.isPackableHex;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.packHex;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.putVarLong;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.segmentName;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.segments;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.sequenceOf;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.varLongSize;
+import static com.aeells.hibernate.profiling.binary.BinaryProfileFormat.zigZag;
+
+/**
+ * Writes profile records in the compact {@link BinaryProfileFormat} to memory mapped segment files, rotating to a new
+ * segment when the current one is full and optionally keeping only the most recent segments. Writing is a copy into
+ * the mapping with no system call per record; pair it with a <code>ProfileRingBuffer</code> to keep even that off the
+ * calling thread. {@link #close()} is intended as Spring <code>destroy-method</code>.
+ */
+public final class BinaryProfileWriter implements ProfileEventHandler
+{
+    public static final String DEFAULT_PREFIX = "hibernate-profile";
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final Logger LOGGER = Logger.getLogger(BinaryProfileWriter.class);
+
+    private final File directory;
+
+    private final String prefix;
+
+    private final int segmentSize;
+
+    private final int maxSegments;
+
+    private final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+
+    private RandomAccessFile file;
+
+    private MappedByteBuffer buffer;
+
+    private long sequence;
+
+    private long lastTimestamp;
+
+    public BinaryProfileWriter(final File directory) throws IOException
+    {
+        this(directory, DEFAULT_PREFIX, DEFAULT_SEGMENT_SIZE, 0);
+    }
+
+    /**
+     * @param maxSegments number of segments kept, oldest deleted first; 0 keeps every segment.
+     */
+    public BinaryProfileWriter(final File directory, final String prefix, final int segmentSize, final int maxSegments) throws IOException
+    {
+        Validate.notNull(directory, "directory cannot be null!");
+        Validate.notEmpty(prefix, "prefix cannot be empty!");
+        Validate.isTrue(segmentSize > HEADER_SIZE, "segment size too small!");
+        Validate.isTrue(maxSegments >= 0, "max segments cannot be negative!");
+
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("unable to create directory: " + directory);
+        }
+
+        this.directory = directory;
+        this.prefix = prefix;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+
+        final File[] existing = segments(directory, prefix);
+        this.sequence = existing.length == 0 ? 0 : sequenceOf(existing[existing.length - 1], prefix);
+
+        openNextSegment();
+    }
+
+    @Override public synchronized void onEvent(final ProfileEvent event)
+    {
+        if (buffer == null)
+        {
+            return;
+        }
+
+        try
+        {
+            write(event);
+        }
+        catch (final IOException e)
+        {
+            LOGGER.error("unable to write profile event: " + event, e);
+        }
+    }
+
+    public synchronized void close() throws IOException
+    {
+        if (buffer != null)
+        {
+            closeSegment();
+        }
+    }
+
+    private void write(final ProfileEvent event) throws IOException
+    {
+        final String identifiers = event.getIdentifiers() == null ? "" : event.getIdentifiers();
+        final boolean packed = isPackableHex(identifiers);
+        final byte[] identifierBytes = packed ? packHex(identifiers) : identifiers.getBytes(UTF8);
+
+        if (requiredSize(event, identifierBytes.length) > buffer.remaining())
+        {
+            closeSegment();
+            openNextSegment();
+
+            if (requiredSize(event, identifierBytes.length) > buffer.remaining())
+            {
+                LOGGER.error("profile event larger than segment: " + event);
+                return;
+            }
+        }
+
+        final int service = intern(event.getService());
+        final int method = intern(event.getMethod());
+        final int entity = event.getEntity() == null ? 0 : intern(event.getEntity()) + 1;
+        final int error = event.getError() == null ? -1 : intern(event.getError());
+
+        buffer.put(CALL);
+        putVarLong(buffer, zigZag(event.getTimestampMillis() - lastTimestamp));
+        putVarLong(buffer, event.getDurationNanos());
+        putVarLong(buffer, service);
+        putVarLong(buffer, method);
+        putVarLong(buffer, entity);
+        putVarLong(buffer, ((long) identifierBytes.length << 1) | (packed ? 1 : 0));
+        buffer.put(identifierBytes);
+        putVarLong(buffer, flagsOf(event));
+
+        if (event.getRowCount() >= 0)
+        {
+            putVarLong(buffer, event.getRowCount());
+
+            if (event.getResultBytes() >= 0)
+            {
+                putVarLong(buffer, event.getResultBytes());
+            }
+        }
+
+        if (event.getCallCount() >= 0)
+        {
+            putVarLong(buffer, event.getCallCount());
+        }
+
+        if (event.getCommitNanos() >= 0)
+        {
+            putVarLong(buffer, event.getCommitNanos());
+        }
+
+        if (event.hasCounters())
+        {
+            for (final HibernateCounter counter : HibernateCounter.values())
+            {
+                putVarLong(buffer, zigZag(event.getCounter(counter)));
+            }
+        }
+
+        if (error >= 0)
+        {
+            putVarLong(buffer, error);
+        }
+
+        if (event.getAcquireNanos() >= 0)
+        {
+            putVarLong(buffer, event.getAcquireNanos());
+            putVarLong(buffer, event.getHeldNanos());
+            putVarLong(buffer, event.getWaiting());
+        }
+
+        if (event.getFirstRowNanos() >= 0)
+        {
+            putVarLong(buffer, event.getFirstRowNanos());
+        }
+
+        if (event.getRequested() >= 0)
+        {
+            putVarLong(buffer, event.getRequested());
+            putVarLong(buffer, event.getSessionHits());
+            putVarLong(buffer, event.getQueries());
+        }
+
+        lastTimestamp = event.getTimestampMillis();
+    }
+
+    private int requiredSize(final ProfileEvent event, final int identifierLength)
+    {
+        int optionalSize = varLongSize(flagsOf(event));
+
+        if (event.getRowCount() >= 0)
+        {
+            optionalSize += varLongSize(event.getRowCount()) + (event.getResultBytes() >= 0 ? varLongSize(event.getResultBytes()) : 0);
+        }
+
+        optionalSize += (event.getCallCount() >= 0 ? varLongSize(event.getCallCount()) : 0) + (event.getCommitNanos() >= 0 ? varLongSize(event.getCommitNanos()) : 0);
+
+        if (event.hasCounters())
+        {
+            for (final HibernateCounter counter : HibernateCounter.values())
+            {
+                optionalSize += varLongSize(zigZag(event.getCounter(counter)));
+            }
+        }
+
+        if (event.getError() != null)
+        {
+            optionalSize += dictionarySize(event.getError()) + varLongSize(dictionary.size() + 4);
+        }
+
+        if (event.getAcquireNanos() >= 0)
+        {
+            optionalSize += varLongSize(event.getAcquireNanos()) + varLongSize(event.getHeldNanos()) + varLongSize(event.getWaiting());
+        }
+
+        optionalSize += event.getFirstRowNanos() >= 0 ? varLongSize(event.getFirstRowNanos()) : 0;
+
+        if (event.getRequested() >= 0)
+        {
+            optionalSize += varLongSize(event.getRequested()) + varLongSize(event.getSessionHits()) + varLongSize(event.getQueries());
+        }
+
+        return optionalSize + dictionarySize(event.getService()) + dictionarySize(event.getMethod()) + dictionarySize(event.getEntity()) +
+               1 + varLongSize(zigZag(event.getTimestampMillis() - lastTimestamp)) + varLongSize(event.getDurationNanos()) +
+               3 * varLongSize(dictionary.size() + 3) + varLongSize((long) identifierLength << 1) + identifierLength;
+    }
+
+    private static int flagsOf(final ProfileEvent event)
+    {
+        int flags = event.hasCounters() ? HAS_COUNTERS : 0;
+
+        if (event.getRowCount() >= 0)
+        {
+            flags |= HAS_ROWS | (event.getResultBytes() >= 0 ? HAS_BYTES : 0);
+        }
+
+        flags |= (event.getCallCount() >= 0 ? HAS_CALLS : 0) | (event.getCommitNanos() >= 0 ? HAS_COMMIT : 0) | (event.getError() != null ? HAS_ERROR : 0);
+        flags |= (event.getAcquireNanos() >= 0 ? HAS_CONNECTION : 0) | (event.getFirstRowNanos() >= 0 ? HAS_FIRST_ROW : 0);
+        flags |= event.getRequested() >= 0 ? HAS_MULTI_GET : 0;
+
+        return flags;
+    }
+
+    private int dictionarySize(final String name)
+    {
+        if (name == null || dictionary.containsKey(name))
+        {
+            return 0;
+        }
+
+        final int length = name.getBytes(UTF8).length;
+        return 1 + varLongSize(dictionary.size() + 3) + varLongSize(length) + length;
+    }
+
+    private int intern(final String name)
+    {
+        Integer id = dictionary.get(name);
+
+        if (id == null)
+        {
+            id = dictionary.size();
+            dictionary.put(name, id);
+
+            final byte[] bytes = name.getBytes(UTF8);
+            buffer.put(DICTIONARY);
+            putVarLong(buffer, id);
+            putVarLong(buffer, bytes.length);
+            buffer.put(bytes);
+        }
+
+        return id;
+    }
+
+    private void openNextSegment() throws IOException
+    {
+        sequence++;
+        file = new RandomAccessFile(new File(directory, segmentName(prefix, sequence)), "rw");
+        file.setLength(segmentSize);
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        dictionary.clear();
+        lastTimestamp = System.currentTimeMillis();
+
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putLong(lastTimestamp);
+
+        deleteExpiredSegments();
+    }
+
+    private void closeSegment() throws IOException
+    {
+        final int length = buffer.position();
+        buffer.force();
+        buffer = null;
+
+        try
+        {
+            // trim the unused tail; platforms refusing to truncate a mapped file keep it zero filled
+            file.setLength(length);
+        }
+        catch (final IOException e)
+        {
+            LOGGER.debug("unable to trim profile segment", e);
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+
+    private void deleteExpiredSegments()
+    {
+        if (maxSegments > 0)
+        {
+            final File[] existing = segments(directory, prefix);
+
+            for (int i = 0; i < existing.length - maxSegments; i++)
+            {
+                if (!existing[i].delete())
+                {
+                    LOGGER.warn("unable to delete profile segment: " + existing[i]);
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -20,6 +20,7 @@ import com.aeells.hibernate.Deleteable;
 import com.aeells.hibernate.Updateable;
 import org.hibernate.criterion.DetachedCriteria;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -33,13 +34,58 @@ public interface HibernateService<T>
 
     void delete(final Deleteable object);
 
+    /**
+     * Bulk writes, batched and flushed every batch size entities. The session is cleared after each flush, detaching
+     * anything loaded in it beforehand. Entities not allowed the write are skipped.
+     *
+     * @return the number of entities written.
+     */
+    int createAll(final Collection<? extends Createable> objects);
+
+    int updateAll(final Collection<? extends Updateable> objects);
+
+    int deleteAll(final Collection<? extends Deleteable> objects);
+
     T findById(final Class daoClass, final String id);
 
+    /**
+     * Multi-get: the entities already in the session, then the rest in as few <code>IN</code> queries as the dialect
+     * allows, in the order requested. Identifiers not found are left out and duplicates returned once.
+     *
+     * @return a {@link MultiGetResult}.
+     */
+    List<T> findByIds(final Class daoClass, final Collection<String> ids);
+
     T findUnique(final DetachedCriteria criteria);
 
+    /**
+     * Cacheable finds: the query result is cached in the named query cache region and the entities in their second
+     * level cache regions, given <code>hibernate.cache.use_query_cache</code> and cacheable entity mappings.
+     */
+    T findUnique(final DetachedCriteria criteria, final String cacheRegion);
+
     T findFirstOrderedBy(final DetachedCriteria criteria);
 
     List<T> find(final DetachedCriteria criteria);
 
+    List<T> find(final DetachedCriteria criteria, final String cacheRegion);
+
     List<T> find(final DetachedCriteria criteria, final int firstResult, final int maxResults);
+
+    /**
+     * Keyset paging: the page of entities ordered by <code>orderProperty</code>, then identifier, following the
+     * <code>after</code> key of the previous page, or the first page when <code>null</code>. Unlike offset paging every
+     * page costs the same, given an index over the ordering. The criteria should carry no orderings or projection of its
+     * own, and the ordering property must not be null.
+     */
+    Page<T> findPage(final DetachedCriteria criteria, final String orderProperty, final PageKey after, final int pageSize);
+
+    /**
+     * Streams the results through a forward only server side cursor, <code>fetchSize</code> rows at a time, evicting
+     * each entity from the session once handled so that memory stays flat however many rows match. Entities the session
+     * already held are left in it.
+     *
+     * @return the number of rows handled.
+     */
+    int scroll(final DetachedCriteria criteria, final int fetchSize, final ResultHandler<T> handler);
 }
\ No newline at end of file
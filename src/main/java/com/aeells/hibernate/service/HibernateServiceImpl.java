@@ -18,24 +18,79 @@ package com.aeells.hibernate.service;
 import com.aeells.hibernate.Createable;
 import com.aeells.hibernate.Deleteable;
 import com.aeells.hibernate.Updateable;
+import org.apache.commons.lang.SerializationUtils;
 import org.apache.commons.lang.Validate;
+import org.hibernate.CacheMode;
+import org.hibernate.Criteria;
+import org.hibernate.EntityMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.Oracle8iDialect;
+import org.hibernate.dialect.SQLServerDialect;
+import org.hibernate.engine.EntityKey;
+import org.hibernate.engine.PersistenceContext;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.impl.CriteriaImpl;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.orm.hibernate3.HibernateTemplate;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import static org.hibernate.criterion.Restrictions.and;
+import static org.hibernate.criterion.Restrictions.eq;
+import static org.hibernate.criterion.Restrictions.gt;
+import static org.hibernate.criterion.Restrictions.in;
+import static org.hibernate.criterion.Restrictions.or;
 import static org.springframework.dao.support.DataAccessUtils.uniqueResult;
 
 /**
  * Standardised database repository access implementation.
  */
-public final class HibernateServiceImpl<T> implements HibernateService
+public final class HibernateServiceImpl<T> implements HibernateService<T>
 {
+    private static final int DEFAULT_BATCH_SIZE = 50;
+
+    private static final int DEFAULT_IN_LIST_SIZE = 500;
+
+    private static final int ORACLE_IN_LIST_SIZE = 1000;
+
+    private static final int SQL_SERVER_IN_LIST_SIZE = 2000;
+
     private final HibernateTemplate hibernateTemplate;
 
+    private final int batchSize;
+
     public HibernateServiceImpl(final HibernateTemplate hibernateTemplate)
     {
+        this(hibernateTemplate, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param batchSize entities written between flushes by the bulk writes, best matched to <code>hibernate.jdbc.batch_size</code>.
+     */
+    public HibernateServiceImpl(final HibernateTemplate hibernateTemplate, final int batchSize)
+    {
+        Validate.isTrue(batchSize > 0, "batch size must be positive!");
+
         this.hibernateTemplate = hibernateTemplate;
+        this.batchSize = batchSize;
     }
 
     @Override public final void create(final Createable model)
@@ -62,6 +117,57 @@ public final class HibernateServiceImpl<T> implements HibernateService
         }
     }
 
+    @Override public final int createAll(final Collection<? extends Createable> models)
+    {
+        return writeAll(models, BatchWrite.CREATE);
+    }
+
+    @Override public final int updateAll(final Collection<? extends Updateable> models)
+    {
+        return writeAll(models, BatchWrite.UPDATE);
+    }
+
+    @Override public final int deleteAll(final Collection<? extends Deleteable> models)
+    {
+        return writeAll(models, BatchWrite.DELETE);
+    }
+
+    // flushes and clears every batchSize entities so that statements go out in JDBC batches and the session stays small
+    private int writeAll(final Collection<?> models, final BatchWrite write)
+    {
+        Validate.notNull(models, "models cannot be null!");
+
+        return hibernateTemplate.execute(new HibernateCallback<Integer>()
+        {
+            @Override public Integer doInHibernate(final Session session)
+            {
+                int written = 0;
+
+                for (final Object model : models)
+                {
+                    if (model != null && write.isAllowed(model))
+                    {
+                        write.write(session, model);
+
+                        if (++written % batchSize == 0)
+                        {
+                            session.flush();
+                            session.clear();
+                        }
+                    }
+                }
+
+                if (written % batchSize != 0)
+                {
+                    session.flush();
+                    session.clear();
+                }
+
+                return written;
+            }
+        });
+    }
+
     public final T findById(final Class daoClass, final String id)
     {
         Validate.notNull(daoClass, "class cannot be null!");
@@ -71,6 +177,80 @@ public final class HibernateServiceImpl<T> implements HibernateService
         return (T) hibernateTemplate.get(daoClass, id);
     }
 
+    @Override public final List<T> findByIds(final Class daoClass, final Collection<String> ids)
+    {
+        Validate.notNull(daoClass, "class cannot be null!");
+        Validate.noNullElements(ids, "ids cannot be null!");
+
+        return hibernateTemplate.execute(new HibernateCallback<List<T>>()
+        {
+            @Override public List<T> doInHibernate(final Session session)
+            {
+                final SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor) session.getSessionFactory();
+                final EntityPersister persister = sessionFactory.getEntityPersister(daoClass.getName());
+                final PersistenceContext persistenceContext = ((SessionImplementor) session).getPersistenceContext();
+
+                final Map<Serializable, Object> found = new HashMap<Serializable, Object>();
+                final List<String> missing = new ArrayList<String>();
+
+                for (final String id : new LinkedHashSet<String>(ids))
+                {
+                    final Object model = persistenceContext.getEntity(new EntityKey(id, persister, EntityMode.POJO));
+
+                    if (model == null)
+                    {
+                        missing.add(id);
+                    }
+                    else
+                    {
+                        found.put(id, model);
+                    }
+                }
+
+                final int sessionHits = found.size();
+                final int inListSize = inListSizeOf(sessionFactory.getDialect());
+                int queries = 0;
+
+                for (int from = 0; from < missing.size(); from += inListSize)
+                {
+                    final List<String> chunk = missing.subList(from, Math.min(from + inListSize, missing.size()));
+                    queries++;
+
+                    for (final Object model : session.createCriteria(daoClass).add(in(persister.getIdentifierPropertyName(), chunk)).list())
+                    {
+                        found.put(persister.getIdentifier(model, EntityMode.POJO), model);
+                    }
+                }
+
+                final List<T> results = new ArrayList<T>(found.size());
+
+                for (final String id : new LinkedHashSet<String>(ids))
+                {
+                    //noinspection unchecked
+                    final T model = (T) found.get(id);
+
+                    if (model != null)
+                    {
+                        results.add(model);
+                    }
+                }
+
+                return new MultiGetResult<T>(results, sessionHits + missing.size(), sessionHits, queries);
+            }
+        });
+    }
+
+    // Oracle allows at most 1000 expressions in a list and SQL Server 2100 parameters a statement
+    private static int inListSizeOf(final Dialect dialect)
+    {
+        if (dialect instanceof Oracle8iDialect)
+        {
+            return ORACLE_IN_LIST_SIZE;
+        }
+
+        return dialect instanceof SQLServerDialect ? SQL_SERVER_IN_LIST_SIZE : DEFAULT_IN_LIST_SIZE;
+    }
+
     public final T findUnique(final DetachedCriteria criteria)
     {
         Validate.notNull(criteria, "criteria cannot be null!");
@@ -79,6 +259,11 @@ public final class HibernateServiceImpl<T> implements HibernateService
         return uniqueResult((List<T>) hibernateTemplate.findByCriteria(criteria));
     }
 
+    @Override public final T findUnique(final DetachedCriteria criteria, final String cacheRegion)
+    {
+        return uniqueResult(findCacheable(criteria, cacheRegion));
+    }
+
     public final T findFirstOrderedBy(final DetachedCriteria criteria)
     {
         Validate.notNull(criteria, "criteria cannot be null!");
@@ -95,6 +280,29 @@ public final class HibernateServiceImpl<T> implements HibernateService
         return (List<T>) hibernateTemplate.findByCriteria(criteria);
     }
 
+    @Override public final List<T> find(final DetachedCriteria criteria, final String cacheRegion)
+    {
+        return findCacheable(criteria, cacheRegion);
+    }
+
+    private List<T> findCacheable(final DetachedCriteria criteria, final String cacheRegion)
+    {
+        Validate.notNull(criteria, "criteria cannot be null!");
+        Validate.notEmpty(cacheRegion, "cache region cannot be empty!");
+
+        return hibernateTemplate.execute(new HibernateCallback<List<T>>()
+        {
+            @Override public List<T> doInHibernate(final Session session)
+            {
+                // a copy, as the cache region and cacheable flag set on an executable criteria are kept by the detached one
+                final Criteria executableCriteria = ((DetachedCriteria) SerializationUtils.clone(criteria)).getExecutableCriteria(session);
+
+                //noinspection unchecked
+                return executableCriteria.setCacheRegion(cacheRegion).setCacheable(true).list();
+            }
+        });
+    }
+
     public final List<T> find(final DetachedCriteria criteria, final int firstResult, final int maxResults)
     {
         Validate.notNull(criteria, "criteria cannot be null!");
@@ -102,4 +310,147 @@ public final class HibernateServiceImpl<T> implements HibernateService
         //noinspection unchecked
         return (List<T>) hibernateTemplate.findByCriteria(criteria, firstResult, maxResults);
     }
+
+    @Override public final Page<T> findPage(final DetachedCriteria criteria, final String orderProperty, final PageKey after, final int pageSize)
+    {
+        Validate.notNull(criteria, "criteria cannot be null!");
+        Validate.notEmpty(orderProperty, "order property cannot be empty!");
+        Validate.isTrue(pageSize > 0, "page size must be positive!");
+
+        return hibernateTemplate.execute(new HibernateCallback<Page<T>>()
+        {
+            @Override public Page<T> doInHibernate(final Session session)
+            {
+                // copied on every page: the seek restriction, orderings and max results set on an executable criteria are
+                // kept by the detached one and cannot be taken off again, and serialising a criteria is cheap next to its query
+                final CriteriaImpl executableCriteria = (CriteriaImpl) ((DetachedCriteria) SerializationUtils.clone(criteria)).getExecutableCriteria(session);
+                final ClassMetadata metadata = session.getSessionFactory().getClassMetadata(executableCriteria.getEntityOrClassName());
+                final String idProperty = metadata.getIdentifierPropertyName();
+                final boolean byId = idProperty.equals(orderProperty);
+
+                if (after != null)
+                {
+                    executableCriteria.add(byId ? gt(idProperty, after.getId()) : seek(orderProperty, idProperty, after));
+                }
+
+                executableCriteria.addOrder(Order.asc(orderProperty));
+                if (!byId)
+                {
+                    executableCriteria.addOrder(Order.asc(idProperty));
+                }
+
+                // one extra row tells whether another page follows
+                executableCriteria.setMaxResults(pageSize + 1);
+
+                //noinspection unchecked
+                final List<T> results = executableCriteria.list();
+
+                if (results.size() <= pageSize)
+                {
+                    return new Page<T>(results, null);
+                }
+
+                final List<T> page = new ArrayList<T>(results.subList(0, pageSize));
+                final T last = page.get(pageSize - 1);
+                final Serializable value = byId ? null : (Serializable) metadata.getPropertyValue(last, orderProperty, EntityMode.POJO);
+                return new Page<T>(page, new PageKey(value, metadata.getIdentifier(last, EntityMode.POJO)));
+            }
+        });
+    }
+
+    private static Criterion seek(final String orderProperty, final String idProperty, final PageKey after)
+    {
+        return or(gt(orderProperty, after.getValue()), and(eq(orderProperty, after.getValue()), gt(idProperty, after.getId())));
+    }
+
+    @Override public final int scroll(final DetachedCriteria criteria, final int fetchSize, final ResultHandler<T> handler)
+    {
+        Validate.notNull(criteria, "criteria cannot be null!");
+        Validate.isTrue(fetchSize > 0, "fetch size must be positive!");
+        Validate.notNull(handler, "handler cannot be null!");
+
+        return hibernateTemplate.execute(new HibernateCallback<Integer>()
+        {
+            @Override public Integer doInHibernate(final Session session)
+            {
+                // a copy, as the fetch size and cache mode set on an executable criteria are kept by the detached one
+                final Criteria executableCriteria = ((DetachedCriteria) SerializationUtils.clone(criteria)).getExecutableCriteria(session);
+                executableCriteria.setFetchSize(fetchSize).setCacheMode(CacheMode.IGNORE);
+
+                // entities the session held before the call may carry changes of the caller's, so they stay
+                final Set<Object> managed = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+                managed.addAll(((SessionImplementor) session).getPersistenceContext().getEntitiesByKey().values());
+
+                final ScrollableResults results = executableCriteria.scroll(ScrollMode.FORWARD_ONLY);
+                int rows = 0;
+
+                try
+                {
+                    while (results.next())
+                    {
+                        //noinspection unchecked
+                        final T model = (T) results.get(0);
+                        handler.handle(model);
+
+                        // projections are not entities of the session
+                        if (model != null && !managed.contains(model) && session.contains(model))
+                        {
+                            session.evict(model);
+                        }
+                        rows++;
+                    }
+                }
+                finally
+                {
+                    results.close();
+                }
+
+                return rows;
+            }
+        });
+    }
+
+    private enum BatchWrite
+    {
+        CREATE
+        {
+            @Override boolean isAllowed(final Object model)
+            {
+                return ((Createable) model).isCreateAllowed();
+            }
+
+            @Override void write(final Session session, final Object model)
+            {
+                session.saveOrUpdate(model);
+            }
+        },
+        UPDATE
+        {
+            @Override boolean isAllowed(final Object model)
+            {
+                return ((Updateable) model).isUpdateAllowed();
+            }
+
+            @Override void write(final Session session, final Object model)
+            {
+                session.saveOrUpdate(model);
+            }
+        },
+        DELETE
+        {
+            @Override boolean isAllowed(final Object model)
+            {
+                return ((Deleteable) model).isDeleteAllowed();
+            }
+
+            @Override void write(final Session session, final Object model)
+            {
+                session.delete(model);
+            }
+        };
+
+        abstract boolean isAllowed(final Object model);
+
+        abstract void write(final Session session, final Object model);
+    }
 }
\ No newline at end of file
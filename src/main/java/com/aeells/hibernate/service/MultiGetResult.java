@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.service;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Entities found by {@link HibernateService#findByIds}, in the order requested, with how they were found: identifiers
+ * requested, those already in the session and <code>IN</code> queries issued for the rest.
+ */
+public final class MultiGetResult<T> extends AbstractList<T> implements RandomAccess
+{
+    private final List<T> results;
+
+    private final int requested;
+
+    private final int sessionHits;
+
+    private final int queries;
+
+    public MultiGetResult(final List<T> results, final int requested, final int sessionHits, final int queries)
+    {
+        this.results = results;
+        this.requested = requested;
+        this.sessionHits = sessionHits;
+        this.queries = queries;
+    }
+
+    @Override public T get(final int index)
+    {
+        return results.get(index);
+    }
+
+    @Override public int size()
+    {
+        return results.size();
+    }
+
+    /**
+     * @return distinct identifiers requested.
+     */
+    public int getRequested()
+    {
+        return requested;
+    }
+
+    public int getSessionHits()
+    {
+        return sessionHits;
+    }
+
+    public int getQueries()
+    {
+        return queries;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.service;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a keyset paged find, with the key to continue from when more follow.
+ */
+public final class Page<T>
+{
+    private final List<T> results;
+
+    private final PageKey next;
+
+    public Page(final List<T> results, final PageKey next)
+    {
+        this.results = Collections.unmodifiableList(results);
+        this.next = next;
+    }
+
+    public List<T> getResults()
+    {
+        return results;
+    }
+
+    /**
+     * @return the key to pass for the following page; <code>null</code> on the last page.
+     */
+    public PageKey getNext()
+    {
+        return next;
+    }
+
+    public boolean hasNext()
+    {
+        return next != null;
+    }
+}
\ No newline at end of file
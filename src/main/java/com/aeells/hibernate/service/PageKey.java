@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.service;
+
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+
+import java.io.Serializable;
+
+/**
+ * Continuation token of a keyset page: the ordering value and identifier of the last entity seen, the identifier
+ * breaking ties between equal values. The value is <code>null</code> when paging by identifier alone.
+ */
+public final class PageKey implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private final Serializable value;
+
+    private final Serializable id;
+
+    public PageKey(final Serializable value, final Serializable id)
+    {
+        this.value = value;
+        this.id = id;
+    }
+
+    public Serializable getValue()
+    {
+        return value;
+    }
+
+    public Serializable getId()
+    {
+        return id;
+    }
+
+    @Override public boolean equals(final Object obj)
+    {
+        if (!(obj instanceof PageKey))
+        {
+            return false;
+        }
+
+        final PageKey other = (PageKey) obj;
+        return new EqualsBuilder().append(value, other.value).append(id, other.id).isEquals();
+    }
+
+    @Override public int hashCode()
+    {
+        return new HashCodeBuilder().append(value).append(id).toHashCode();
+    }
+
+    @Override public String toString()
+    {
+        return value == null ? String.valueOf(id) : value + "," + id;
+    }
+}
\ No newline at end of file
@@ -15,6 +15,7 @@
 
 package com.aeells.hibernate.model;
 
+import com.aeells.hibernate.profiling.HibernateProfiled;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.lang.builder.ReflectionToStringBuilder;
@@ -29,7 +30,7 @@ import java.util.List;
 import static javax.persistence.CascadeType.ALL;
 import static javax.persistence.FetchType.LAZY;
 
-@Entity
+@Entity @HibernateProfiled
 public class Parent extends AbstractPersistentObject
 {
     private static final String[] EXCLUDED_FIELDS = {"children"};
@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import com.aeells.hibernate.profiling.binary.BinaryProfileReader;
+import com.aeells.hibernate.profiling.binary.BinaryProfileWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public final class BinaryProfileRoundTripTest
+{
+    private static final String UUID = "4028e4a13c5e2e0c013c5e2e0c4f0000";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsBackWhatWasWritten() throws IOException
+    {
+        final BinaryProfileWriter writer = new BinaryProfileWriter(folder.getRoot());
+        writer.onEvent(event(1000L, "findById", "Parent", UUID, 412000L));
+        writer.onEvent(event(999L, "find", "Child", "a|b", 15000000L));
+        writer.onEvent(event(1005L, "find", null, null, 1000L));
+
+        final ProfileEvent counted = event(1006L, "findById", "Parent", UUID, 2000L);
+        counted.setCounters(new long[]{1L, 1L, 0L, 40L, 0L, -1L, 2L, 1L});
+        counted.setRowCount(50000L);
+        counted.setResultBytes(1200000L);
+        writer.onEvent(counted);
+
+        final ProfileEvent failed = event(1007L, "update", "Parent", UUID, 5000000000L);
+        failed.setError("CannotGetJdbcConnectionException");
+        final ConnectionUsage usage = new ConnectionUsage();
+        usage.acquired(5000000000L, 12L);
+        failed.setConnectionUsage(usage);
+        writer.onEvent(failed);
+
+        final ProfileEvent streamed = event(1008L, "scroll", "Parent", "", 95000000L);
+        streamed.setRowCount(1000000L);
+        streamed.setFirstRowNanos(1204000L);
+        writer.onEvent(streamed);
+
+        final ProfileEvent multiGet = event(1009L, "findByIds", "Parent", UUID, 1870000L);
+        multiGet.setRowCount(40L);
+        multiGet.setMultiGet(42L, 12L, 1L);
+        writer.onEvent(multiGet);
+        writer.close();
+
+        final BinaryProfileReader reader = new BinaryProfileReader(folder.getRoot());
+
+        assertRecord(reader.next(), 1000L, "HibernateServiceImpl|findById|Parent|" + UUID + "|0.412");
+        assertRecord(reader.next(), 999L, "HibernateServiceImpl|find|Child|a|b|15.000");
+        assertRecord(reader.next(), 1005L, "HibernateServiceImpl|find|0.001");
+        assertRecord(reader.next(), 1006L, "HibernateServiceImpl|findById|Parent|" + UUID + "|0.002|rows=50000 bytes=1200000 sql=1 load=1 fetch=0 coll=40 hit=0 miss=-1 qhit=2 qmiss=1");
+        assertRecord(reader.next(), 1007L, "HibernateServiceImpl|update|Parent|" + UUID + "|5000.000|error=CannotGetJdbcConnectionException acquireNanos=5000000000 heldNanos=0 waiting=12");
+        assertRecord(reader.next(), 1008L, "HibernateServiceImpl|scroll|Parent||95.000|rows=1000000 firstRowNanos=1204000");
+        assertRecord(reader.next(), 1009L, "HibernateServiceImpl|findByIds|Parent|" + UUID + "|1.870|rows=40 requested=42 sessionHits=12 queries=1");
+        assertThat(reader.next(), nullValue());
+    }
+
+    @Test
+    public void rotatesAndExpiresSegments() throws IOException
+    {
+        final BinaryProfileWriter writer = new BinaryProfileWriter(folder.getRoot(), "test", 1024, 3);
+        final int events = 1000;
+
+        for (int i = 0; i < events; i++)
+        {
+            writer.onEvent(event(i, "findById", "Parent", UUID, i));
+        }
+
+        writer.close();
+
+        final File[] segments = folder.getRoot().listFiles();
+        assertThat(segments.length, equalTo(3));
+
+        final BinaryProfileReader reader = new BinaryProfileReader(sorted(segments));
+        ProfileRecord record = reader.next();
+        long previous = record.getDurationNanos() - 1;
+        int read = 0;
+
+        for (; record != null; record = reader.next())
+        {
+            assertThat(record.getDurationNanos(), equalTo(previous + 1));
+            assertThat(record.getTimestampMillis(), equalTo(record.getDurationNanos()));
+            previous = record.getDurationNanos();
+            read++;
+        }
+
+        assertThat(previous, equalTo(events - 1L));
+        assertThat(read, lessThan(events));
+    }
+
+    @Test
+    public void recordsAreAFractionOfTheirTextSize() throws IOException
+    {
+        final BinaryProfileWriter writer = new BinaryProfileWriter(folder.getRoot());
+        final ProfileEvent event = event(System.currentTimeMillis(), "findById", "Parent", UUID, 412000L);
+
+        for (int i = 0; i < 1000; i++)
+        {
+            writer.onEvent(event);
+        }
+
+        writer.close();
+
+        // text lines carry a 24 character ISO8601 timestamp and a line separator as well
+        final long textSize = 1000L * (event.toString().length() + 25);
+        assertThat(folder.getRoot().listFiles()[0].length() * 3, lessThan(textSize));
+    }
+
+    private static File[] sorted(final File[] segments)
+    {
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    private static void assertRecord(final ProfileRecord record, final long timestamp, final String text)
+    {
+        assertThat(record.getTimestampMillis(), equalTo(timestamp));
+        assertThat(record.toString(), equalTo(text));
+    }
+
+    private static ProfileEvent event(final long timestamp, final String method, final String entity, final String identifiers, final long nanos)
+    {
+        final ProfileEvent event = new ProfileEvent();
+        event.setTimestampMillis(timestamp);
+        event.setService("HibernateServiceImpl");
+        event.setMethod(method);
+        event.setEntity(entity);
+        event.setIdentifiers(identifiers);
+        event.setDurationNanos(nanos);
+        return event;
+    }
+}
\ No newline at end of file
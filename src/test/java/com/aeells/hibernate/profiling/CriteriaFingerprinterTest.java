@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import com.aeells.hibernate.model.Child;
+import com.aeells.hibernate.model.Parent;
+import org.hibernate.criterion.CriteriaSpecification;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+public final class CriteriaFingerprinterTest
+{
+    private final CriteriaFingerprinter fingerprinter = new CriteriaFingerprinter();
+
+    @Test
+    public void leavesOutLiteralValues()
+    {
+        assertThat(fingerprinter.fingerprint(DetachedCriteria.forClass(Parent.class).add(Restrictions.eq("version", 1)).addOrder(Order.asc("id"))),
+                   equalTo("Parent where SimpleExpression(version,?,false,=) order by id asc"));
+        assertThat(fingerprinter.fingerprint(DetachedCriteria.forClass(Parent.class).add(Restrictions.in("id", new Object[]{"a", "b", "c"}))),
+                   equalTo(fingerprinter.fingerprint(DetachedCriteria.forClass(Parent.class).add(Restrictions.in("id", new Object[]{"d"})))));
+    }
+
+    @Test
+    public void distinguishesShapes()
+    {
+        final String byVersion = fingerprinter.fingerprint(DetachedCriteria.forClass(Parent.class).add(Restrictions.eq("version", 1)));
+
+        assertThat(fingerprinter.fingerprint(DetachedCriteria.forClass(Parent.class).add(Restrictions.gt("version", 1))), not(equalTo(byVersion)));
+        assertThat(fingerprinter.fingerprint(DetachedCriteria.forClass(Parent.class).add(Restrictions.eq("id", "a"))), not(equalTo(byVersion)));
+        assertThat(fingerprinter.fingerprint(DetachedCriteria.forClass(Child.class).add(Restrictions.eq("version", 1))), not(equalTo(byVersion)));
+    }
+
+    @Test
+    public void describesJoinsJunctionsAndProjections()
+    {
+        final DetachedCriteria criteria = DetachedCriteria.forClass(Parent.class)
+                .createAlias("children", "c")
+                .createAlias("c.parent", "p", CriteriaSpecification.LEFT_JOIN)
+                .add(Restrictions.or(Restrictions.isNull("c.version"), Restrictions.like("c.id", "abc%")))
+                .setProjection(Projections.rowCount());
+
+        assertThat(fingerprinter.fingerprint(criteria),
+                   equalTo("Parent join children c left join c.parent p where LogicalExpression(NullExpression(c.version),SimpleExpression(c.id,?,false,like),or) select count(*)"));
+    }
+
+    @Test
+    public void refreshesWhenCriteriaChangesAfterFirstUse()
+    {
+        final DetachedCriteria criteria = DetachedCriteria.forClass(Parent.class);
+        assertThat(fingerprinter.fingerprint(criteria), equalTo("Parent"));
+
+        criteria.add(Restrictions.eq("version", 1));
+        assertThat(fingerprinter.fingerprint(criteria), equalTo("Parent where SimpleExpression(version,?,false,=)"));
+    }
+}
\ No newline at end of file
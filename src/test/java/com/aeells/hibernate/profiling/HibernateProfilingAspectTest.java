@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import com.aeells.hibernate.model.PersistentObjectStub;
+import com.aeells.hibernate.service.HibernateService;
+import com.aeells.hibernate.service.HibernateServiceImpl;
+import org.hibernate.criterion.DetachedCriteria;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.orm.hibernate3.HibernateCallback;
+import org.springframework.orm.hibernate3.HibernateTemplate;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hibernate.criterion.DetachedCriteria.forClass;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public final class HibernateProfilingAspectTest
+{
+    private final HibernateTemplate hibernateTemplate = mock(HibernateTemplate.class);
+
+    private final HibernateProfilingAspect aspect = new HibernateProfilingAspect();
+
+    private final ProfilingStatistics statistics = new ProfilingStatistics();
+
+    private HibernateService service;
+
+    @Before
+    public void initialise()
+    {
+        aspect.getInterceptor().setStatistics(statistics);
+
+        final AspectJProxyFactory factory = new AspectJProxyFactory(new HibernateServiceImpl(hibernateTemplate));
+        factory.addAspect(aspect);
+        service = factory.getProxy();
+    }
+
+    @Test
+    public void profileFindThroughAspect()
+    {
+        when(hibernateTemplate.get(PersistentObjectStub.class, "1")).thenReturn(new PersistentObjectStub());
+
+        service.findById(PersistentObjectStub.class, "1");
+
+        assertThat(statistics.get("findById", "PersistentObjectStub").getCalls(), equalTo(1L));
+    }
+
+    @Test
+    public void profileFindListThroughAspect()
+    {
+        when(hibernateTemplate.findByCriteria(any(DetachedCriteria.class))).thenReturn(Arrays.asList(new PersistentObjectStub(), new PersistentObjectStub()));
+
+        service.find(forClass(PersistentObjectStub.class));
+
+        assertThat(statistics.get("find", "PersistentObjectStub").getTotalRows(), equalTo(2L));
+    }
+
+    @Test
+    public void profileCacheableFindOncePerCacheRegionThroughAspect()
+    {
+        aspect.getInterceptor().setCacheRegionStatistics(new ProfilingStatistics());
+        when(hibernateTemplate.execute(any(HibernateCallback.class))).thenReturn(Arrays.asList(new PersistentObjectStub()));
+
+        service.find(forClass(PersistentObjectStub.class), "referenceData");
+
+        assertThat(statistics.get("find", "PersistentObjectStub").getCalls(), equalTo(1L));
+        assertThat(aspect.getInterceptor().getCacheRegionStatistics().get("find", "referenceData").getCalls(), equalTo(1L));
+    }
+
+    @Test
+    public void profileWritesThroughAspect()
+    {
+        final PersistentObjectStub stub = new PersistentObjectStub();
+        stub.create = true;
+
+        service.create(stub);
+
+        verify(hibernateTemplate).saveOrUpdate(stub);
+        assertThat(statistics.get("create", "PersistentObjectStub").getCalls(), equalTo(1L));
+    }
+
+    @Test
+    public void profileWriteBatchThroughAspect()
+    {
+        when(hibernateTemplate.execute(any(HibernateCallback.class))).thenReturn(2);
+
+        service.createAll(Arrays.asList(new PersistentObjectStub(), new PersistentObjectStub()));
+
+        assertThat(statistics.get("createAll", "PersistentObjectStub").getTotalRows(), equalTo(2L));
+    }
+
+    @Test
+    public void unprofiledWithoutStatistics()
+    {
+        aspect.setInterceptor(new HibernateProfilingInterceptor());
+
+        service.findById(PersistentObjectStub.class, "1");
+
+        assertThat(statistics.getOperations().isEmpty(), equalTo(true));
+    }
+}
\ No newline at end of file
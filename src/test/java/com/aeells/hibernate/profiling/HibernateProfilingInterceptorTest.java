@@ -17,23 +17,42 @@ package com.aeells.hibernate.profiling;
 
 import com.aeells.hibernate.model.AbstractPersistentObject;
 import com.aeells.hibernate.model.PersistentObjectStub;
-import org.apache.commons.beanutils.BeanUtils;
+import com.aeells.hibernate.service.MultiGetResult;
+import com.aeells.hibernate.service.Page;
+import com.aeells.hibernate.service.PageKey;
+import com.aeells.hibernate.service.ResultHandler;
 import org.apache.log4j.Appender;
 import org.apache.log4j.Logger;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.Signature;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Restrictions;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.powermock.reflect.Whitebox;
-import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.core.classloader.annotations.SuppressStaticInitializationFor;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import javax.sql.DataSource;
+import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -41,8 +60,8 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-@RunWith(PowerMockRunner.class) @PrepareForTest({Appender.class, BeanUtils.class})
-@SuppressStaticInitializationFor("com.aeells.hibernate.profiling.HibernateProfilingInterceptor")
+@RunWith(PowerMockRunner.class) @PrepareForTest({Appender.class})
+@SuppressStaticInitializationFor({"com.aeells.hibernate.profiling.HibernateProfilingInterceptor", "com.aeells.hibernate.profiling.ProfileLogWriter"})
 public final class HibernateProfilingInterceptorTest
 {
     private final ProceedingJoinPoint mockCall = mock(ProceedingJoinPoint.class);
@@ -59,6 +78,7 @@ public final class HibernateProfilingInterceptorTest
     public void initialise() throws Throwable
     {
         Whitebox.setInternalState(HibernateProfilingInterceptor.class, mockLogger);
+        Whitebox.setInternalState(ProfileLogWriter.class, mockLogger);
 
         when(mockCall.getSignature()).thenReturn(mockSignature);
         when(mockSignature.getDeclaringType()).thenReturn(Class.class);
@@ -141,19 +161,579 @@ public final class HibernateProfilingInterceptorTest
         verify(mockLogger).trace(anyString());
     }
 
+    @Test
+    public void profileFindListRecordsRowCountAndCappedIdentifierSample() throws Throwable
+    {
+        when(mockLogger.isTraceEnabled()).thenReturn(true);
+        when(mockSignature.getName()).thenReturn("find");
+        final List<Object> models = new ArrayList<Object>();
+        for (int i = 0; i < 5; i++)
+        {
+            models.add(new PersistentObjectStub());
+        }
+        when(mockCall.proceed()).thenReturn(models);
+        profiler.setStatistics(new ProfilingStatistics());
+        profiler.setMaxLoggedIdentifiers(2);
+        profiler.setEstimateResultSize(true);
+
+        profiler.profileFindList(mockCall);
+
+        final ArgumentCaptor<Object> record = ArgumentCaptor.forClass(Object.class);
+        verify(mockLogger).trace(record.capture());
+        assertThat(record.getValue().toString(), containsString("|PersistentObjectStub|null,null,...|"));
+        assertThat(record.getValue().toString(), endsWith("|rows=5 bytes=160"));
+        assertThat(profiler.getStatistics().get("find", "PersistentObjectStub").getMaxRows(), equalTo(5L));
+    }
+
+    @Test
+    public void profileFailedCallWithExceptionType() throws Throwable
+    {
+        when(mockLogger.isTraceEnabled()).thenReturn(true);
+        when(mockSignature.getName()).thenReturn("findById");
+        when(mockCall.getArgs()).thenReturn(new Object[]{PersistentObjectStub.class, "42"});
+        when(mockCall.proceed()).thenThrow(new CannotAcquireLockException("lock wait timeout exceeded"));
+        profiler.setStatistics(new ProfilingStatistics());
+
+        try
+        {
+            profiler.profileFind(mockCall);
+            fail();
+        }
+        catch (final CannotAcquireLockException e)
+        {
+            final ArgumentCaptor<Object> record = ArgumentCaptor.forClass(Object.class);
+            verify(mockLogger).trace(record.capture());
+            assertThat(record.getValue().toString(), containsString("|findById|PersistentObjectStub|42|"));
+            assertThat(record.getValue().toString(), endsWith("|error=CannotAcquireLockException"));
+
+            final OperationStatistics statistics = profiler.getStatistics().get("findById", "PersistentObjectStub");
+            assertThat(statistics.getErrors(), equalTo(1L));
+            assertThat(statistics.getCalls(), equalTo(0L));
+            assertThat(statistics.getMaxErrorNanos(), equalTo(statistics.getErrorNanos()));
+        }
+    }
+
+    @Test
+    public void recordStatisticsWhenTraceDisabled() throws Throwable
+    {
+        when(mockLogger.isTraceEnabled()).thenReturn(false);
+        when(mockSignature.getName()).thenReturn("findById");
+        when(mockCall.proceed()).thenReturn(new PersistentObjectStub());
+        profiler.setStatistics(new ProfilingStatistics());
+
+        profiler.profileFind(mockCall);
+
+        verify(mockLogger, never()).trace(anyString());
+        assertThat(profiler.getStatistics().get("findById", "PersistentObjectStub").getCalls(), equalTo(1L));
+    }
+
+    @Test
+    public void recordStatisticsForEmptyResultsAgainstCriteriaEntity() throws Throwable
+    {
+        when(mockLogger.isTraceEnabled()).thenReturn(true);
+        when(mockSignature.getName()).thenReturn("find");
+        when(mockCall.proceed()).thenReturn(new ArrayList<Object>());
+        when(mockCall.getArgs()).thenReturn(new Object[]{DetachedCriteria.forClass(PersistentObjectStub.class)});
+        profiler.setStatistics(new ProfilingStatistics());
+
+        profiler.profileFindList(mockCall);
+
+        verify(mockLogger, never()).trace(anyString());
+        assertThat(profiler.getStatistics().getOperations().keySet(), hasItem("find|PersistentObjectStub"));
+    }
+
+    @Test
+    public void recordStatisticsPerQueryShape() throws Throwable
+    {
+        when(mockLogger.isTraceEnabled()).thenReturn(false);
+        when(mockSignature.getName()).thenReturn("find");
+        when(mockCall.proceed()).thenReturn(new ArrayList<Object>());
+        when(mockCall.getArgs()).thenReturn(new Object[]{DetachedCriteria.forClass(PersistentObjectStub.class).add(Restrictions.eq("fieldName", "a"))},
+                                            new Object[]{DetachedCriteria.forClass(PersistentObjectStub.class).add(Restrictions.eq("fieldName", "b"))});
+        profiler.setQueryShapeStatistics(new ProfilingStatistics());
+
+        profiler.profileFindList(mockCall);
+        profiler.profileFindList(mockCall);
+
+        assertThat(profiler.getQueryShapeStatistics().get("find", "PersistentObjectStub where SimpleExpression(fieldName,?,false,=)").getCalls(), equalTo(2L));
+    }
+
+    @Test
+    public void unsampledCallsAreCountedButNotTraced() throws Throwable
+    {
+        when(mockLogger.isTraceEnabled()).thenReturn(true);
+        when(mockSignature.getName()).thenReturn("findById");
+        when(mockCall.proceed()).thenReturn(new PersistentObjectStub());
+        profiler.setStatistics(new ProfilingStatistics());
+        profiler.setSampleRate(0d);
+
+        profiler.profileFind(mockCall);
+
+        verify(mockLogger, never()).trace(anyString());
+        assertThat(profiler.getStatistics().get("findById", "PersistentObjectStub").getCalls(), equalTo(1L));
+    }
+
+    @Test
+    public void fastCallsAreCountedButNotTraced() throws Throwable
+    {
+        when(mockLogger.isTraceEnabled()).thenReturn(true);
+        when(mockSignature.getName()).thenReturn("findById");
+        when(mockCall.proceed()).thenReturn(new PersistentObjectStub());
+        profiler.setStatistics(new ProfilingStatistics());
+        profiler.setSlowCallThresholdMillis(60000L);
+
+        profiler.profileFind(mockCall);
+
+        verify(mockLogger, never()).trace(anyString());
+        assertThat(profiler.getStatistics().get("findById", "PersistentObjectStub").getCalls(), equalTo(1L));
+        assertThat(profiler.getStatistics().get("findById", "PersistentObjectStub").getSlowCalls(), equalTo(0L));
+    }
+
+    @Test
+    public void captureHibernateActivityDeltas() throws Throwable
+    {
+        HibernateCounter.STATEMENTS.increment();
+
+        when(mockLogger.isTraceEnabled()).thenReturn(true);
+        when(mockSignature.getName()).thenReturn("findById");
+        when(mockCall.proceed()).thenAnswer(new Answer<Object>()
+        {
+            @Override public Object answer(final InvocationOnMock invocation)
+            {
+                HibernateCounter.STATEMENTS.increment();
+
+                for (int i = 0; i < 40; i++)
+                {
+                    HibernateCounter.COLLECTION_LOADS.increment();
+                }
+
+                return new PersistentObjectStub();
+            }
+        });
+        profiler.setStatistics(new ProfilingStatistics());
+        profiler.setCountHibernateActivity(true);
+
+        profiler.profileFind(mockCall);
+
+        final ArgumentCaptor<Object> record = ArgumentCaptor.forClass(Object.class);
+        verify(mockLogger).trace(record.capture());
+        assertThat(record.getValue().toString(), endsWith("|sql=1 load=0 fetch=0 coll=40 hit=0 miss=0 qhit=0 qmiss=0"));
+
+        final OperationStatistics operation = profiler.getStatistics().get("findById", "PersistentObjectStub");
+        assertThat(operation.getCountedCalls(), equalTo(1L));
+        assertThat(operation.getCounterTotal(HibernateCounter.COLLECTION_LOADS), equalTo(40L));
+    }
+
+    @Test
+    public void rollUpCallsWithinTransaction() throws Throwable
+    {
+        when(mockLogger.isTraceEnabled()).thenReturn(true);
+        when(mockSignature.getName()).thenReturn("findById");
+        when(mockCall.proceed()).thenReturn(new PersistentObjectStub());
+        profiler.setStatistics(new ProfilingStatistics());
+        profiler.setTransactionStatistics(new ProfilingStatistics());
+        profiler.setProfileTransactions(true);
+        profiler.setTraceCalls(false);
+
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setCurrentTransactionName("com.acme.OrderService.placeOrder");
+
+        try
+        {
+            profiler.profileFind(mockCall);
+            profiler.profileFind(mockCall);
+
+            for (final TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations())
+            {
+                synchronization.beforeCommit(false);
+                synchronization.beforeCompletion();
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            }
+        }
+        finally
+        {
+            TransactionSynchronizationManager.clear();
+        }
+
+        final ArgumentCaptor<Object> record = ArgumentCaptor.forClass(Object.class);
+        verify(mockLogger).trace(record.capture());
+        assertThat(record.getValue().toString(), startsWith("Transaction|commit|OrderService.placeOrder|findById:PersistentObjectStub*2|"));
+        assertThat(record.getValue().toString(), containsString("|calls=2 commitNanos="));
+        assertThat(profiler.getTransactionStatistics().get("commit", "OrderService.placeOrder").getCalls(), equalTo(1L));
+        assertThat(profiler.getStatistics().getOperations().containsKey("commit|OrderService.placeOrder"), equalTo(false));
+        assertThat(TransactionSynchronizationManager.hasResource(profiler), equalTo(false));
+    }
+
+    @Test
+    public void attributeListOfResultsNotProfiledToEntityQueriedAsForSingleResult() throws Throwable
+    {
+        final List<Object> names = new ArrayList<Object>();
+        names.add("first");
+        names.add("second");
+        when(mockLogger.isTraceEnabled()).thenReturn(true);
+        when(mockSignature.getName()).thenReturn("findNames");
+        when(mockCall.getArgs()).thenReturn(new Object[]{PersistentObjectStub.class});
+        when(mockCall.proceed()).thenReturn(names, "first");
+        profiler.setStatistics(new ProfilingStatistics());
+        profiler.setTransactionStatistics(new ProfilingStatistics());
+        profiler.setProfileTransactions(true);
+        profiler.setTraceCalls(false);
+
+        final String record = rollUpWithinTransaction();
+
+        assertThat(record, startsWith("Transaction|commit|OrderService.placeOrder|findNames:PersistentObjectStub*2|"));
+        assertThat(profiler.getStatistics().get("findNames", "PersistentObjectStub").getCalls(), equalTo(2L));
+        assertThat(profiler.getStatistics().get("findNames", "PersistentObjectStub").getTotalRows(), equalTo(2L));
+    }
+
+    @Test
+    public void rollUpResultsNotProfiledOfNoEntityQueriedAlikeForListAndSingleResult() throws Throwable
+    {
+        final List<Object> names = new ArrayList<Object>();
+        names.add("first");
+        when(mockLogger.isTraceEnabled()).thenReturn(true);
+        when(mockSignature.getName()).thenReturn("findNames");
+        when(mockCall.proceed()).thenReturn(names, "first");
+        profiler.setStatistics(new ProfilingStatistics());
+        profiler.setTransactionStatistics(new ProfilingStatistics());
+        profiler.setProfileTransactions(true);
+        profiler.setTraceCalls(false);
+
+        final String record = rollUpWithinTransaction();
+
+        assertThat(record, startsWith("Transaction|commit|OrderService.placeOrder|findNames:-*2|"));
+        assertThat(profiler.getStatistics().getOperations().isEmpty(), equalTo(true));
+    }
+
+    private String rollUpWithinTransaction() throws Throwable
+    {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setCurrentTransactionName("com.acme.OrderService.placeOrder");
+
+        try
+        {
+            profiler.profileFindList(mockCall);
+            profiler.profileFind(mockCall);
+
+            for (final TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations())
+            {
+                synchronization.beforeCommit(false);
+                synchronization.beforeCompletion();
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            }
+        }
+        finally
+        {
+            TransactionSynchronizationManager.clear();
+        }
+
+        final ArgumentCaptor<Object> record = ArgumentCaptor.forClass(Object.class);
+        verify(mockLogger).trace(record.capture());
+        return record.getValue().toString();
+    }
+
+    @Test
+    public void addConnectionUseFromProfilingDataSource() throws Throwable
+    {
+        final DataSource mockDataSource = mock(DataSource.class);
+        final Connection mockConnection = mock(Connection.class);
+        when(mockDataSource.getConnection()).thenReturn(mockConnection);
+        final ProfilingDataSource dataSource = new ProfilingDataSource(mockDataSource);
+
+        when(mockLogger.isTraceEnabled()).thenReturn(true);
+        when(mockSignature.getName()).thenReturn("findById");
+        when(mockCall.proceed()).thenAnswer(new Answer<Object>()
+        {
+            @Override public Object answer(final InvocationOnMock invocation) throws Throwable
+            {
+                dataSource.getConnection().close();
+                return new PersistentObjectStub();
+            }
+        });
+        profiler.setStatistics(new ProfilingStatistics());
+        profiler.setDataSource(dataSource);
+
+        profiler.profileFind(mockCall);
+
+        final ArgumentCaptor<Object> record = ArgumentCaptor.forClass(Object.class);
+        verify(mockLogger).trace(record.capture());
+        assertThat(record.getValue().toString(), containsString("|acquireNanos="));
+        assertThat(record.getValue().toString(), endsWith(" waiting=0"));
+        assertThat(profiler.getStatistics().get("findById", "PersistentObjectStub").getConnectionCalls(), equalTo(1L));
+    }
+
+    @Test
+    public void recordConnectionUsageAndHibernateActivityOfFailedCalls() throws Throwable
+    {
+        final DataSource mockDataSource = mock(DataSource.class);
+        final Connection mockConnection = mock(Connection.class);
+        when(mockDataSource.getConnection()).thenReturn(mockConnection);
+        final ProfilingDataSource dataSource = new ProfilingDataSource(mockDataSource);
+
+        when(mockSignature.getName()).thenReturn("update");
+        when(mockCall.proceed()).thenAnswer(new Answer<Object>()
+        {
+            @Override public Object answer(final InvocationOnMock invocation) throws Throwable
+            {
+                dataSource.getConnection().close();
+                HibernateCounter.STATEMENTS.increment();
+                throw new IllegalStateException();
+            }
+        });
+        profiler.setStatistics(new ProfilingStatistics());
+        profiler.setDataSource(dataSource);
+        profiler.setCountHibernateActivity(true);
+
+        try
+        {
+            profiler.profileWrites(mockCall, new PersistentObjectStub());
+        }
+        catch (final IllegalStateException e)
+        {
+            // expected
+        }
+
+        final OperationStatistics update = profiler.getStatistics().get("update", "PersistentObjectStub");
+        assertThat(update.getErrors(), equalTo(1L));
+        assertThat(update.getConnectionCalls(), equalTo(1L));
+        assertThat(update.getCountedCalls(), equalTo(1L));
+        assertThat(update.getCounterTotal(HibernateCounter.STATEMENTS), equalTo(1L));
+    }
+
+    @Test
+    public void attributeFlushToPendingWrites() throws Throwable
+    {
+        when(mockLogger.isTraceEnabled()).thenReturn(true);
+        when(mockSignature.getName()).thenReturn("update");
+        profiler.setProfileFlushes(true);
+        profiler.setTraceCalls(false);
+
+        profiler.profileWrites(mockCall, new PersistentObjectStub());
+        profiler.profileWrites(mockCall, new PersistentObjectStub());
+        profiler.setTraceCalls(true);
+        profiler.publishFlush("flush", 2000000L, 2L, null, null);
+
+        final ArgumentCaptor<Object> record = ArgumentCaptor.forClass(Object.class);
+        verify(mockLogger).trace(record.capture());
+        assertThat(record.getValue().toString(), equalTo("Flush|flush|PersistentObjectStub|update:PersistentObjectStub*2|2.000|rows=2"));
+    }
+
+    @Test
+    public void attributeEveryFlushWithinBulkWriteToTheBatch() throws Throwable
+    {
+        when(mockSignature.getName()).thenReturn("createAll");
+        profiler.setProfileFlushes(true);
+        profiler.setFlushStatistics(new ProfilingStatistics());
+        final List<PersistentObjectStub> models = new ArrayList<PersistentObjectStub>();
+        for (int i = 0; i < 3; i++)
+        {
+            models.add(new PersistentObjectStub());
+        }
+        when(mockCall.proceed()).thenAnswer(new Answer<Object>()
+        {
+            @Override public Object answer(final InvocationOnMock invocation)
+            {
+                profiler.publishFlush("flush", 1000000L, 2L, null, null);
+                profiler.publishFlush("flush", 1000000L, 1L, null, null);
+                return 3;
+            }
+        });
+
+        profiler.profileWriteBatch(mockCall, models);
+        profiler.publishFlush("flush", 1000000L, 0L, null, null);
+        profiler.publishFlush("flush", 1000000L, 0L, null, null);
+
+        assertThat(profiler.getFlushStatistics().get("flush", "PersistentObjectStub").getCalls(), equalTo(3L));
+        assertThat(profiler.getFlushStatistics().get("flush", "-").getCalls(), equalTo(1L));
+    }
+
+    @Test
+    public void recordBatchSizeOfPendingBulkWrite() throws Throwable
+    {
+        when(mockLogger.isTraceEnabled()).thenReturn(true);
+        when(mockSignature.getName()).thenReturn("createAll");
+        profiler.setProfileFlushes(true);
+        profiler.setTraceCalls(false);
+        final List<PersistentObjectStub> models = new ArrayList<PersistentObjectStub>();
+        for (int i = 0; i < 5; i++)
+        {
+            models.add(new PersistentObjectStub());
+        }
+        when(mockCall.proceed()).thenReturn(5);
+
+        profiler.profileWriteBatch(mockCall, models);
+        profiler.setTraceCalls(true);
+        profiler.publishFlush("flush", 2000000L, 5L, null, null);
+
+        final ArgumentCaptor<Object> record = ArgumentCaptor.forClass(Object.class);
+        verify(mockLogger).trace(record.capture());
+        assertThat(record.getValue().toString(), equalTo("Flush|flush|PersistentObjectStub|createAll:PersistentObjectStub*5|2.000|rows=5"));
+    }
+
+    @Test
+    public void dropPendingWritesWhenTransactionCompletesUnflushed() throws Throwable
+    {
+        when(mockSignature.getName()).thenReturn("update");
+        profiler.setProfileFlushes(true);
+        profiler.setFlushStatistics(new ProfilingStatistics());
+
+        TransactionSynchronizationManager.initSynchronization();
+
+        try
+        {
+            profiler.profileWrites(mockCall, new PersistentObjectStub());
+
+            for (final TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations())
+            {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        }
+        finally
+        {
+            TransactionSynchronizationManager.clear();
+        }
+
+        profiler.publishFlush("flush", 2000000L, 0L, null, null);
+
+        assertThat(profiler.getFlushStatistics().getOperations().keySet(), hasItem("flush|-"));
+        assertThat(profiler.getFlushStatistics().getOperations().containsKey("flush|PersistentObjectStub"), equalTo(false));
+    }
+
+    @Test
+    public void recordCacheableFindsPerCacheRegion() throws Throwable
+    {
+        when(mockSignature.getName()).thenReturn("find");
+        when(mockCall.getArgs()).thenReturn(new Object[]{DetachedCriteria.forClass(PersistentObjectStub.class), "referenceData"});
+        final List<Object> models = new ArrayList<Object>();
+        models.add(new PersistentObjectStub());
+        when(mockCall.proceed()).thenAnswer(new Answer<Object>()
+        {
+            @Override public Object answer(final InvocationOnMock invocation)
+            {
+                HibernateCounter.QUERY_CACHE_HITS.increment();
+
+                for (int i = 0; i < 3; i++)
+                {
+                    HibernateCounter.CACHE_HITS.increment();
+                }
+
+                return models;
+            }
+        });
+        profiler.setCacheRegionStatistics(new ProfilingStatistics());
+        profiler.setCountHibernateActivity(true);
+
+        profiler.profileCacheableFind(mockCall, "referenceData");
+
+        final OperationSummary region = new OperationSummary("find", "referenceData", profiler.getCacheRegionStatistics().get("find", "referenceData"));
+        assertThat(region.getQueryCacheHits(), equalTo(1L));
+        assertThat(region.getCacheHits(), equalTo(3L));
+        assertThat(region.getCacheHitRatio(), equalTo(1d));
+    }
+
+    @Test
+    public void recordNoCacheRegionForOtherFinds() throws Throwable
+    {
+        when(mockSignature.getName()).thenReturn("find");
+        when(mockCall.getArgs()).thenReturn(new Object[]{DetachedCriteria.forClass(PersistentObjectStub.class), "notARegion"});
+        final List<Object> models = new ArrayList<Object>();
+        models.add(new PersistentObjectStub());
+        when(mockCall.proceed()).thenReturn(models);
+        profiler.setCacheRegionStatistics(new ProfilingStatistics());
+
+        profiler.profileFindList(mockCall);
+
+        assertThat(profiler.getCacheRegionStatistics().getOperations().isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void profileFindByIdsWithSessionHitsAndQueries() throws Throwable
+    {
+        when(mockLogger.isTraceEnabled()).thenReturn(true);
+        when(mockSignature.getName()).thenReturn("findByIds");
+        when(mockCall.getArgs()).thenReturn(new Object[]{PersistentObjectStub.class, new ArrayList<String>()});
+        final List<PersistentObjectStub> results = new ArrayList<PersistentObjectStub>();
+        results.add(new PersistentObjectStub());
+        results.add(new PersistentObjectStub());
+        when(mockCall.proceed()).thenReturn(new MultiGetResult<PersistentObjectStub>(results, 3, 1, 1));
+
+        profiler.profileFindByIds(mockCall);
+
+        final ArgumentCaptor<Object> record = ArgumentCaptor.forClass(Object.class);
+        verify(mockLogger).trace(record.capture());
+        assertThat(record.getValue().toString(), startsWith("Class|findByIds|PersistentObjectStub|"));
+        assertThat(record.getValue().toString(), containsString("|rows=2 requested=3 sessionHits=1 queries=1"));
+    }
+
+    @Test
+    public void profileFindPageAsOneRecordPerPage() throws Throwable
+    {
+        when(mockLogger.isTraceEnabled()).thenReturn(true);
+        when(mockSignature.getName()).thenReturn("findPage");
+        final List<PersistentObjectStub> results = new ArrayList<PersistentObjectStub>();
+        results.add(new PersistentObjectStub());
+        results.add(new PersistentObjectStub());
+        final Page<PersistentObjectStub> page = new Page<PersistentObjectStub>(results, new PageKey(null, "1"));
+        when(mockCall.proceed()).thenReturn(page);
+
+        assertThat(profiler.profileFindPage(mockCall), equalTo((Object) page));
+
+        final ArgumentCaptor<Object> record = ArgumentCaptor.forClass(Object.class);
+        verify(mockLogger).trace(record.capture());
+        assertThat(record.getValue().toString(), startsWith("Class|findPage|PersistentObjectStub|"));
+        assertThat(record.getValue().toString(), containsString("|rows=2"));
+    }
+
+    @Test
+    public void profileScrollWithTimeToFirstRow() throws Throwable
+    {
+        when(mockLogger.isTraceEnabled()).thenReturn(true);
+        when(mockSignature.getName()).thenReturn("scroll");
+        final List<Object> handled = new ArrayList<Object>();
+        when(mockCall.getArgs()).thenReturn(new Object[]{DetachedCriteria.forClass(PersistentObjectStub.class), 100, new ResultHandler<Object>()
+        {
+            @Override public void handle(final Object model)
+            {
+                handled.add(model);
+            }
+        }});
+        when(mockCall.proceed(org.mockito.Matchers.<Object[]>any())).thenAnswer(new Answer<Object>()
+        {
+            @SuppressWarnings({"unchecked"}) @Override public Object answer(final InvocationOnMock invocation) throws Throwable
+            {
+                final ResultHandler<Object> handler = (ResultHandler<Object>) ((Object[]) invocation.getArguments()[0])[2];
+                handler.handle(new PersistentObjectStub());
+                handler.handle(new PersistentObjectStub());
+                return 2;
+            }
+        });
+
+        assertThat(profiler.profileScroll(mockCall), equalTo((Object) 2));
+
+        final ArgumentCaptor<Object> record = ArgumentCaptor.forClass(Object.class);
+        verify(mockLogger).trace(record.capture());
+        assertThat(handled.size(), equalTo(2));
+        assertThat(record.getValue().toString(), startsWith("Class|scroll|PersistentObjectStub||"));
+        assertThat(record.getValue().toString(), containsString("|rows=2 firstRowNanos="));
+    }
+
     @Test
     public void logReflectionErrors() throws Throwable
     {
         when(mockLogger.isTraceEnabled()).thenReturn(true);
-        final Object model = new PersistentObjectStub();
-        when(mockCall.proceed()).thenReturn(model);
-        PowerMockito.mockStatic(BeanUtils.class);
-        //noinspection ThrowableInstanceNeverThrown
-        PowerMockito.when(BeanUtils.getProperty(model, "id")).thenThrow(new RuntimeException());
+        when(mockCall.proceed()).thenReturn(new UnreadableIdentifierStub());
 
         profiler.profileFind(mockCall);
 
         verify(mockLogger, never()).trace(anyString());
         verify(mockLogger).error(anyString());
     }
+
+    @HibernateProfiled public static final class UnreadableIdentifierStub
+    {
+        public String getId()
+        {
+            throw new IllegalStateException();
+        }
+    }
 }
\ No newline at end of file
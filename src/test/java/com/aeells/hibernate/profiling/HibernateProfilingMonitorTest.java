@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import com.aeells.hibernate.model.PersistentObjectStub;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public final class HibernateProfilingMonitorTest
+{
+    private final MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+
+    private final HibernateProfilingInterceptor interceptor = new HibernateProfilingInterceptor();
+
+    private final ProceedingJoinPoint mockCall = mock(ProceedingJoinPoint.class);
+
+    private final Signature mockSignature = mock(Signature.class);
+
+    private HibernateProfilingMonitor monitor;
+
+    private ObjectName objectName;
+
+    @Before
+    public void initialise() throws Exception
+    {
+        interceptor.setStatistics(new ProfilingStatistics());
+        monitor = new HibernateProfilingMonitor(interceptor, mBeanServer);
+        monitor.register();
+        objectName = new ObjectName(HibernateProfilingMonitor.DEFAULT_OBJECT_NAME);
+
+        when(mockCall.getSignature()).thenReturn(mockSignature);
+        when(mockSignature.getDeclaringType()).thenReturn(Class.class);
+        when(mockSignature.getName()).thenReturn("update");
+    }
+
+    @After
+    public void destroy() throws Exception
+    {
+        monitor.unregister();
+    }
+
+    @Test
+    public void exposesOperationStatistics() throws Throwable
+    {
+        interceptor.profileWrites(mockCall, new PersistentObjectStub());
+
+        final CompositeData[] operations = (CompositeData[]) mBeanServer.getAttribute(objectName, "Operations");
+
+        assertThat(operations.length, equalTo(1));
+        assertThat((String) operations[0].get("method"), equalTo("update"));
+        assertThat((String) operations[0].get("entity"), equalTo("PersistentObjectStub"));
+        assertThat((Long) operations[0].get("calls"), equalTo(1L));
+        assertThat((Long) operations[0].get("windowCalls"), equalTo(1L));
+    }
+
+    @Test
+    public void countsErrors() throws Throwable
+    {
+        when(mockCall.proceed()).thenThrow(new IllegalStateException());
+
+        try
+        {
+            interceptor.profileWrites(mockCall, new PersistentObjectStub());
+            fail();
+        }
+        catch (final IllegalStateException e)
+        {
+            assertThat(monitor.getOperations().get(0).getErrors(), equalTo(1L));
+            assertThat(monitor.getOperations().get(0).getCalls(), equalTo(0L));
+        }
+    }
+
+    @Test
+    public void resetsStatistics() throws Throwable
+    {
+        interceptor.profileWrites(mockCall, new PersistentObjectStub());
+
+        mBeanServer.invoke(objectName, "resetStatistics", null, null);
+
+        assertThat(monitor.getOperations().get(0).getCalls(), equalTo(0L));
+    }
+
+    @Test
+    public void disablesProfilingPerEntity() throws Throwable
+    {
+        mBeanServer.invoke(objectName, "disableProfiling", new Object[]{"PersistentObjectStub"}, new String[]{String.class.getName()});
+
+        interceptor.profileWrites(mockCall, new PersistentObjectStub());
+
+        assertThat(monitor.getOperations().size(), equalTo(0));
+        assertThat((String[]) mBeanServer.getAttribute(objectName, "DisabledEntities"), equalTo(new String[]{"PersistentObjectStub"}));
+
+        monitor.enableProfiling("PersistentObjectStub");
+        interceptor.profileWrites(mockCall, new PersistentObjectStub());
+
+        assertThat(monitor.getOperations().get(0).getCalls(), equalTo(1L));
+    }
+
+    @Test
+    public void reportsSynchronousWriting() throws Exception
+    {
+        assertThat((Long) mBeanServer.getAttribute(objectName, "DroppedRecords"), equalTo(-1L));
+    }
+}
\ No newline at end of file
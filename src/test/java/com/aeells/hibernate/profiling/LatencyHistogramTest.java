@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public final class LatencyHistogramTest
+{
+    @Test
+    public void bucketsCoverEveryValueWithinBoundedError()
+    {
+        for (long nanos = 1; nanos < (1L << 40); nanos = nanos * 3 + 1)
+        {
+            final long upperBound = LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(nanos));
+
+            assertThat(upperBound, greaterThanOrEqualTo(nanos));
+            assertThat((double) upperBound, lessThanOrEqualTo(nanos * 1.125));
+        }
+    }
+
+    @Test
+    public void outOfRangeValuesAreClamped()
+    {
+        assertThat(LatencyHistogram.bucketOf(-1L), equalTo(0));
+        assertThat(LatencyHistogram.bucketOf(Long.MAX_VALUE), equalTo(LatencyHistogram.BUCKETS - 1));
+    }
+
+    @Test
+    public void snapshotReportsPercentiles()
+    {
+        final RollingLatencyHistogram histogram = new RollingLatencyHistogram(60000000000L, 2);
+
+        for (long micros = 1; micros <= 1000; micros++)
+        {
+            histogram.record(micros * 1000L);
+        }
+
+        final LatencySnapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.getCount(), equalTo(1000L));
+        assertThat(snapshot.getMax(), equalTo(1000000L));
+        assertWithinBucket(snapshot.getP50(), 500000L);
+        assertWithinBucket(snapshot.getP95(), 950000L);
+        assertWithinBucket(snapshot.getP99(), 990000L);
+    }
+
+    @Test
+    public void resetClearsWindow()
+    {
+        final RollingLatencyHistogram histogram = new RollingLatencyHistogram(60000000000L, 2);
+        histogram.record(1000L);
+
+        histogram.reset();
+
+        assertThat(histogram.snapshot().getCount(), equalTo(0L));
+    }
+
+    private static void assertWithinBucket(final long actual, final long expected)
+    {
+        assertThat(actual, greaterThanOrEqualTo(expected));
+        assertThat((double) actual, lessThanOrEqualTo(expected * 1.125));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,544 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import com.aeells.hibernate.model.Child;
+import com.aeells.hibernate.model.Parent;
+import com.aeells.hibernate.service.HibernateService;
+import com.aeells.hibernate.service.HibernateServiceImpl;
+import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.log4j.FileAppender;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.hibernate3.HibernateTemplate;
+import org.springframework.orm.hibernate3.annotation.AnnotationSessionFactoryBean;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Drives {@link HibernateServiceImpl} over the HSQLDB test context from 1 to 64 threads with a read/write mix over
+ * <code>Parent</code>/<code>Child</code>, once unprofiled on a plain data source and session factory and once through
+ * {@link HibernateProfilingAspect}, reporting throughput, latency percentiles, profiling overhead and contention: time
+ * blocked and the most contended locks (log4j appenders, the connection pool, the database), connection pool waits and
+ * <code>@Version</code> conflicts. Run manually,
+ * e.g. <code>mvn -P load-test test-compile exec:java -Dload.threads=1,8,64 -Dload.reads=0.9 -Dload.trace=true</code>.
+ */
+public final class LoadGenerator
+{
+    private static final int[] THREADS = threads(System.getProperty("load.threads", "1,2,4,8,16,32,64"));
+
+    private static final long SECONDS = Long.getLong("load.seconds", 10L);
+
+    private static final long WARM_UP_SECONDS = Long.getLong("load.warmUpSeconds", 5L);
+
+    private static final double READS = Double.parseDouble(System.getProperty("load.reads", "0.8"));
+
+    private static final int PARENTS = Integer.getInteger("load.parents", 100);
+
+    private static final boolean TRACE = Boolean.getBoolean("load.trace");
+
+    private static final long SAMPLE_MILLIS = 5L;
+
+    private final ProfilingDataSource dataSource;
+
+    // the baseline has its own database and session factory, with neither the profiling data source nor listeners
+    private final BasicDataSource plainDataSource = new BasicDataSource();
+
+    private final AnnotationSessionFactoryBean plainSessionFactory = new AnnotationSessionFactoryBean();
+
+    private final HibernateService<Parent> unprofiled;
+
+    private final HibernateService<Parent> profiled;
+
+    private final String[] unprofiledIds;
+
+    private final String[] profiledIds;
+
+    private LoadGenerator(final ClassPathXmlApplicationContext context) throws Exception
+    {
+        final HibernateTemplate hibernateTemplate = context.getBean("hibernateTemplate", HibernateTemplate.class);
+        final HibernateProfilingInterceptor interceptor = context.getBean("persistenceProfiler", HibernateProfilingInterceptor.class);
+        dataSource = context.getBean("profilingDataSource", ProfilingDataSource.class);
+
+        plainDataSource.setDriverClassName("org.hsqldb.jdbcDriver");
+        plainDataSource.setUrl("jdbc:hsqldb:mem:unprofiled");
+        plainDataSource.setUsername("sa");
+        plainDataSource.setPassword("");
+        plainSessionFactory.setDataSource(plainDataSource);
+        final Properties properties = new Properties();
+        properties.putAll(context.getBean("&sessionFactory", AnnotationSessionFactoryBean.class).getHibernateProperties());
+        properties.remove("hibernate.cache.query_cache_factory");
+        plainSessionFactory.setHibernateProperties(properties);
+        plainSessionFactory.setPackagesToScan(new String[]{"com.aeells.hibernate.model"});
+        plainSessionFactory.afterPropertiesSet();
+        final HibernateTemplate plainTemplate = new HibernateTemplate((SessionFactory) plainSessionFactory.getObject());
+
+        //noinspection unchecked
+        unprofiled = new HibernateServiceImpl<Parent>(plainTemplate);
+
+        final HibernateProfilingAspect aspect = new HibernateProfilingAspect();
+        aspect.setInterceptor(interceptor);
+        final AspectJProxyFactory factory = new AspectJProxyFactory(new HibernateServiceImpl<Parent>(hibernateTemplate));
+        factory.addAspect(aspect);
+        profiled = factory.getProxy();
+
+        unprofiledIds = seed(plainTemplate);
+        profiledIds = seed(hibernateTemplate);
+    }
+
+    private static String[] seed(final HibernateTemplate hibernateTemplate)
+    {
+        // show_sql would serialise every thread on System.out
+        ((SessionFactoryImplementor) hibernateTemplate.getSessionFactory()).getSettings().getSqlStatementLogger().setLogToStdout(false);
+        final String[] ids = new String[PARENTS];
+
+        for (int i = 0; i < PARENTS; i++)
+        {
+            final Parent parent = newParent();
+            hibernateTemplate.saveOrUpdate(parent);
+            ids[i] = parent.getId();
+        }
+
+        return ids;
+    }
+
+    private void close() throws Exception
+    {
+        plainSessionFactory.destroy();
+        plainDataSource.close();
+    }
+
+    public static void main(final String[] args) throws Exception
+    {
+        final ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext("spring-test-context.xml");
+
+        try
+        {
+            // @Version conflicts are counted rather than logged
+            Logger.getLogger("org.hibernate.event.def.AbstractFlushingEventListener").setLevel(Level.OFF);
+
+            if (TRACE)
+            {
+                final Logger logger = Logger.getLogger(HibernateProfilingInterceptor.class);
+                logger.setAdditivity(false);
+                logger.addAppender(new FileAppender(new PatternLayout("%m%n"), "target/load-test-trace.log", false));
+                logger.setLevel(Level.TRACE);
+            }
+
+            final LoadGenerator generator = new LoadGenerator(context);
+
+            try
+            {
+                generator.report();
+            }
+            finally
+            {
+                generator.close();
+            }
+        }
+        finally
+        {
+            context.close();
+        }
+    }
+
+    private void report() throws InterruptedException
+    {
+        System.out.println("reads " + READS + ", " + PARENTS + " parents, " + SECONDS + "s per run" + (TRACE ? ", trace to target/load-test-trace.log" : ""));
+        run(4, WARM_UP_SECONDS, false);
+        run(4, WARM_UP_SECONDS, true);
+
+        System.out.println(String.format("%7s %8s %9s %8s %8s %8s %8s %9s %6s %8s %8s %8s  %s", "threads", "profiled", "ops/s", "p50(ms)", "p95(ms)",
+                                         "p99(ms)", "max(ms)", "conflicts", "errors", "blocked%", "poolWait", "acq(ms)", "contended locks"));
+
+        for (final int threads : THREADS)
+        {
+            final Result baseline = run(threads, SECONDS, false);
+            final Result result = run(threads, SECONDS, true);
+            print(threads, false, baseline);
+            print(threads, true, result);
+            System.out.println(String.format("        overhead: throughput %+.1f%%, p50 %+.1f%%, p99 %+.1f%%", change(baseline.getThroughput(), result.getThroughput()),
+                                             change(baseline.percentile(0.50), result.percentile(0.50)), change(baseline.percentile(0.99), result.percentile(0.99))));
+        }
+    }
+
+    private Result run(final int threads, final long seconds, final boolean profiling) throws InterruptedException
+    {
+        dataSource.reset();
+
+        final Worker[] workers = new Worker[threads];
+        final Thread[] workerThreads = new Thread[threads];
+        final long deadline = System.nanoTime() + seconds * 1000000000L;
+
+        for (int i = 0; i < threads; i++)
+        {
+            workers[i] = new Worker(profiling ? profiled : unprofiled, profiling ? profiledIds : unprofiledIds, deadline, i);
+            workerThreads[i] = new Thread(workers[i], "load-" + i);
+        }
+
+        final LockSampler sampler = new LockSampler(workerThreads);
+        final long begin = System.nanoTime();
+
+        for (final Thread thread : workerThreads)
+        {
+            thread.start();
+        }
+        sampler.start();
+
+        for (final Thread thread : workerThreads)
+        {
+            thread.join();
+        }
+        final long elapsed = System.nanoTime() - begin;
+        sampler.finish();
+
+        // pool waits are only measured by the profiling data source
+        if (!profiling)
+        {
+            return new Result(workers, elapsed, sampler, 0, 0L);
+        }
+
+        return new Result(workers, elapsed, sampler, dataSource.getMaxWaiting(), dataSource.getAcquisitions() == 0 ? 0L : dataSource.getAcquireNanos() / dataSource.getAcquisitions());
+    }
+
+    private static void print(final int threads, final boolean profiling, final Result result)
+    {
+        System.out.println(String.format("%7d %8s %9.0f %8.3f %8.3f %8.3f %8.3f %9d %6d %8.1f %8d %8.3f  %s", threads, profiling ? "yes" : "no", result.getThroughput(),
+                                         millis(result.percentile(0.50)), millis(result.percentile(0.95)), millis(result.percentile(0.99)), millis(result.getMax()),
+                                         result.getConflicts(), result.getErrors(), result.getBlockedPercent(), result.getMaxPoolWaiting(),
+                                         millis(result.getMeanAcquireNanos()), result.getContendedLocks()));
+    }
+
+    private static double millis(final long nanos)
+    {
+        return nanos / 1000000d;
+    }
+
+    private static double change(final double baseline, final double value)
+    {
+        return baseline == 0 ? 0d : (value - baseline) * 100d / baseline;
+    }
+
+    private static Parent newParent()
+    {
+        final Parent parent = new Parent(1);
+        parent.addChild(new Child(1, parent));
+        parent.addChild(new Child(1, parent));
+        return parent;
+    }
+
+    private static int[] threads(final String threads)
+    {
+        final String[] values = threads.split(",");
+        final int[] result = new int[values.length];
+
+        for (int i = 0; i < values.length; i++)
+        {
+            result[i] = Integer.parseInt(values[i].trim());
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads are split between <code>findById</code> of a seeded parent and a criteria find of its children, writes
+     * between creating a parent with two children and updating a seeded parent, which conflicts with concurrent updates.
+     */
+    private static final class Worker implements Runnable
+    {
+        private final HibernateService<Parent> service;
+
+        private final String[] ids;
+
+        private final long deadline;
+
+        private final Random random;
+
+        private final long[] counts = new long[LatencyHistogram.BUCKETS];
+
+        private long max;
+
+        private long operations;
+
+        private long conflicts;
+
+        private long errors;
+
+        private Worker(final HibernateService<Parent> service, final String[] ids, final long deadline, final int seed)
+        {
+            this.service = service;
+            this.ids = ids;
+            this.deadline = deadline;
+            this.random = new Random(seed);
+        }
+
+        @Override public void run()
+        {
+            long now = System.nanoTime();
+
+            while (now < deadline)
+            {
+                final String id = ids[random.nextInt(ids.length)];
+                final double operation = random.nextDouble();
+
+                try
+                {
+                    execute(operation, id);
+                }
+                catch (final OptimisticLockingFailureException e)
+                {
+                    conflicts++;
+                }
+                catch (final RuntimeException e)
+                {
+                    errors++;
+                }
+
+                final long end = System.nanoTime();
+                final long nanos = end - now;
+                counts[LatencyHistogram.bucketOf(nanos)]++;
+                max = Math.max(max, nanos);
+                operations++;
+                now = end;
+            }
+        }
+
+        private void execute(final double operation, final String id)
+        {
+            if (operation < READS / 2)
+            {
+                service.findById(Parent.class, id);
+            }
+            else if (operation < READS)
+            {
+                service.find(DetachedCriteria.forClass(Child.class).add(Restrictions.eq("parent.id", id)));
+            }
+            else if (operation < (1d + READS) / 2)
+            {
+                service.create(newParent());
+            }
+            else
+            {
+                final Parent parent = service.findById(Parent.class, id);
+                if (parent != null)
+                {
+                    service.update(parent);
+                }
+            }
+        }
+    }
+
+    /**
+     * Samples the workers' thread states, counting the locks they are blocked on or waiting for by class.
+     */
+    private static final class LockSampler extends Thread
+    {
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+        private final Thread[] workers;
+
+        private final Map<String, Integer> locks = new HashMap<String, Integer>();
+
+        private volatile boolean running = true;
+
+        private long samples;
+
+        private long blocked;
+
+        private LockSampler(final Thread[] workers)
+        {
+            super("load-sampler");
+            setDaemon(true);
+            this.workers = workers;
+        }
+
+        @Override public void run()
+        {
+            while (running)
+            {
+                for (final Thread worker : workers)
+                {
+                    final ThreadInfo info = THREADS.getThreadInfo(worker.getId());
+                    if (info == null || info.getThreadState() == Thread.State.TERMINATED)
+                    {
+                        continue;
+                    }
+
+                    samples++;
+
+                    if (info.getThreadState() == Thread.State.BLOCKED)
+                    {
+                        blocked++;
+                    }
+
+                    if (info.getLockInfo() != null && info.getThreadState() != Thread.State.RUNNABLE)
+                    {
+                        final String lock = info.getLockInfo().getClassName();
+                        final Integer count = locks.get(lock);
+                        locks.put(lock, count == null ? 1 : count + 1);
+                    }
+                }
+
+                try
+                {
+                    Thread.sleep(SAMPLE_MILLIS);
+                }
+                catch (final InterruptedException e)
+                {
+                    return;
+                }
+            }
+        }
+
+        private void finish() throws InterruptedException
+        {
+            running = false;
+            join();
+        }
+
+        private double getBlockedPercent()
+        {
+            return samples == 0 ? 0d : blocked * 100d / samples;
+        }
+
+        private String getContendedLocks()
+        {
+            final List<Map.Entry<String, Integer>> entries = new ArrayList<Map.Entry<String, Integer>>(locks.entrySet());
+            Collections.sort(entries, new Comparator<Map.Entry<String, Integer>>()
+            {
+                @Override public int compare(final Map.Entry<String, Integer> a, final Map.Entry<String, Integer> b)
+                {
+                    return b.getValue().compareTo(a.getValue());
+                }
+            });
+
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < Math.min(3, entries.size()); i++)
+            {
+                sb.append(i == 0 ? "" : ", ").append(entries.get(i).getKey()).append(' ')
+                        .append(String.format("%.0f%%", entries.get(i).getValue() * 100d / samples));
+            }
+            return sb.toString();
+        }
+    }
+
+    private static final class Result
+    {
+        private final long[] counts = new long[LatencyHistogram.BUCKETS];
+
+        private final long elapsedNanos;
+
+        private final double blockedPercent;
+
+        private final String contendedLocks;
+
+        private final long maxPoolWaiting;
+
+        private final long meanAcquireNanos;
+
+        private long operations;
+
+        private long max;
+
+        private long conflicts;
+
+        private long errors;
+
+        private Result(final Worker[] workers, final long elapsedNanos, final LockSampler sampler, final long maxPoolWaiting, final long meanAcquireNanos)
+        {
+            for (final Worker worker : workers)
+            {
+                for (int i = 0; i < counts.length; i++)
+                {
+                    counts[i] += worker.counts[i];
+                }
+                operations += worker.operations;
+                max = Math.max(max, worker.max);
+                conflicts += worker.conflicts;
+                errors += worker.errors;
+            }
+
+            this.elapsedNanos = elapsedNanos;
+            this.blockedPercent = sampler.getBlockedPercent();
+            this.contendedLocks = sampler.getContendedLocks();
+            this.maxPoolWaiting = maxPoolWaiting;
+            this.meanAcquireNanos = meanAcquireNanos;
+        }
+
+        private double getThroughput()
+        {
+            return operations * 1000000000d / elapsedNanos;
+        }
+
+        private long percentile(final double percentile)
+        {
+            return LatencyHistogram.percentile(counts, operations, percentile, max);
+        }
+
+        private long getMax()
+        {
+            return max;
+        }
+
+        private long getConflicts()
+        {
+            return conflicts;
+        }
+
+        private long getErrors()
+        {
+            return errors;
+        }
+
+        private double getBlockedPercent()
+        {
+            return blockedPercent;
+        }
+
+        private String getContendedLocks()
+        {
+            return contendedLocks;
+        }
+
+        private long getMaxPoolWaiting()
+        {
+            return maxPoolWaiting;
+        }
+
+        private long getMeanAcquireNanos()
+        {
+            return meanAcquireNanos;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public final class ProfileRingBufferTest
+{
+    private final List<String> written = Collections.synchronizedList(new ArrayList<String>());
+
+    private final ProfileEventHandler recordingWriter = new ProfileEventHandler()
+    {
+        @Override public void onEvent(final ProfileEvent event)
+        {
+            written.add(event.toString());
+        }
+    };
+
+    @Test
+    public void capacityIsRoundedUpToPowerOfTwo()
+    {
+        assertThat(new ProfileRingBuffer(recordingWriter, 1000, OverflowPolicy.DROP).getCapacity(), equalTo(1024));
+    }
+
+    @Test
+    public void writesPublishedEventsInOrder() throws InterruptedException
+    {
+        final ProfileRingBuffer ringBuffer = new ProfileRingBuffer(recordingWriter, 8, OverflowPolicy.BLOCK);
+        ringBuffer.start();
+
+        for (int i = 0; i < 100; i++)
+        {
+            ringBuffer.onEvent(event(String.valueOf(i)));
+        }
+
+        ringBuffer.stop();
+
+        assertThat(written.size(), equalTo(100));
+        assertThat(written.get(0), equalTo("HibernateServiceImpl|findById|Parent|0|0.001"));
+        assertThat(written.get(99), equalTo("HibernateServiceImpl|findById|Parent|99|0.001"));
+    }
+
+    @Test
+    public void keepsWritingAfterWriterError() throws InterruptedException
+    {
+        final ProfileRingBuffer ringBuffer = new ProfileRingBuffer(new ProfileEventHandler()
+        {
+            @Override public void onEvent(final ProfileEvent event)
+            {
+                if (written.isEmpty())
+                {
+                    written.add("failed");
+                    throw new StackOverflowError();
+                }
+
+                written.add(event.toString());
+            }
+        }, 4, OverflowPolicy.BLOCK);
+        ringBuffer.start();
+
+        for (int i = 0; i < 20; i++)
+        {
+            ringBuffer.onEvent(event(String.valueOf(i)));
+        }
+
+        ringBuffer.stop();
+
+        assertThat(written.size(), equalTo(20));
+        assertThat(written.get(19), equalTo("HibernateServiceImpl|findById|Parent|19|0.001"));
+    }
+
+    @Test
+    public void dropsAndCountsEventsWhenFull() throws InterruptedException
+    {
+        final ProfileRingBuffer ringBuffer = new ProfileRingBuffer(recordingWriter, 4, OverflowPolicy.DROP);
+
+        for (int i = 0; i < 10; i++)
+        {
+            ringBuffer.onEvent(event(String.valueOf(i)));
+        }
+
+        assertThat(ringBuffer.getDroppedCount(), equalTo(6L));
+        assertThat(ringBuffer.getBacklog(), equalTo(4L));
+
+        ringBuffer.start();
+        ringBuffer.stop();
+
+        assertThat(written.size(), equalTo(4));
+    }
+
+    @Test
+    public void blockingPolicyLosesNothingAcrossProducers() throws InterruptedException
+    {
+        final ProfileRingBuffer ringBuffer = new ProfileRingBuffer(recordingWriter, 16, OverflowPolicy.BLOCK);
+        ringBuffer.start();
+
+        final int producers = 4;
+        final int eventsPerProducer = 2500;
+        final CountDownLatch finished = new CountDownLatch(producers);
+
+        for (int p = 0; p < producers; p++)
+        {
+            new Thread(new Runnable()
+            {
+                @Override public void run()
+                {
+                    final ProfileEvent event = event("id");
+                    for (int i = 0; i < eventsPerProducer; i++)
+                    {
+                        ringBuffer.onEvent(event);
+                    }
+                    finished.countDown();
+                }
+            }).start();
+        }
+
+        finished.await();
+        ringBuffer.stop();
+
+        assertThat(written.size(), equalTo(producers * eventsPerProducer));
+        assertThat(ringBuffer.getDroppedCount(), equalTo(0L));
+    }
+
+    @Test
+    public void stoppingWhileProducersRunWritesOrCountsEveryEvent() throws InterruptedException
+    {
+        final ProfileRingBuffer ringBuffer = new ProfileRingBuffer(recordingWriter, 64, OverflowPolicy.BLOCK);
+        ringBuffer.start();
+
+        final int producers = 4;
+        final int eventsPerProducer = 20000;
+        final CountDownLatch started = new CountDownLatch(producers);
+        final CountDownLatch finished = new CountDownLatch(producers);
+
+        for (int p = 0; p < producers; p++)
+        {
+            new Thread(new Runnable()
+            {
+                @Override public void run()
+                {
+                    final ProfileEvent event = event("id");
+                    started.countDown();
+                    for (int i = 0; i < eventsPerProducer; i++)
+                    {
+                        ringBuffer.onEvent(event);
+                    }
+                    finished.countDown();
+                }
+            }).start();
+        }
+
+        started.await();
+        ringBuffer.stop();
+        finished.await();
+
+        assertThat(written.size() + ringBuffer.getDroppedCount(), equalTo((long) producers * eventsPerProducer));
+        assertThat(ringBuffer.getBacklog(), equalTo(0L));
+    }
+
+    private static ProfileEvent event(final String id)
+    {
+        final ProfileEvent event = new ProfileEvent();
+        event.setService("HibernateServiceImpl");
+        event.setMethod("findById");
+        event.setEntity("Parent");
+        event.setIdentifiers(id);
+        event.setDurationNanos(1000L);
+        return event;
+    }
+}
\ No newline at end of file
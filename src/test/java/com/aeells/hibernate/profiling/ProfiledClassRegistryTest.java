@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import com.aeells.hibernate.model.AbstractPersistentObject;
+import com.aeells.hibernate.model.PersistentObjectStub;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public final class ProfiledClassRegistryTest
+{
+    private final ProfiledClassRegistry registry = new ProfiledClassRegistry();
+
+    @Test
+    public void nonProfiledClassResolvesToNull()
+    {
+        assertThat(registry.lookup(AbstractPersistentObject.class), nullValue());
+        assertThat(registry.lookup(Object.class), nullValue());
+    }
+
+    @Test
+    public void profiledClassIsResolvedOnce()
+    {
+        final ProfiledClass profiledClass = registry.lookup(PersistentObjectStub.class);
+
+        assertThat(profiledClass, notNullValue());
+        assertThat(profiledClass.getEntityName(), equalTo("PersistentObjectStub"));
+        assertThat(registry.lookup(PersistentObjectStub.class), sameInstance(profiledClass));
+    }
+
+    @Test
+    public void subclassInheritsProfilingUnderItsOwnName()
+    {
+        assertThat(registry.lookup(PersistentObjectStubSubclass.class).getEntityName(), equalTo("PersistentObjectStubSubclass"));
+    }
+
+    @Test
+    public void proxyResolvesToPersistentClass()
+    {
+        assertThat(registry.lookup(PersistentObjectStubProxy.class).getEntityName(), equalTo("PersistentObjectStub"));
+    }
+
+    @Test
+    public void identifierIsReadThroughResolvedAccessor() throws Exception
+    {
+        final PersistentObjectStub stub = new PersistentObjectStubProxy();
+
+        assertThat(registry.lookup(stub.getClass()).getIdentifier(stub), nullValue());
+        assertThat(registry.lookup(NestedIdentifierStub.class).getIdentifier(new NestedIdentifierStub()), equalTo("nested"));
+    }
+
+    public static class PersistentObjectStubSubclass extends PersistentObjectStub
+    {
+    }
+
+    public static class PersistentObjectStubProxy extends PersistentObjectStub implements HibernateProxy
+    {
+        @Override public Object writeReplace()
+        {
+            return this;
+        }
+
+        @Override public LazyInitializer getHibernateLazyInitializer()
+        {
+            return null;
+        }
+    }
+
+    @HibernateProfiled(identifier = "ref.fieldName") public static class NestedIdentifierStub
+    {
+        public PersistentObjectStub getRef()
+        {
+            return new PersistentObjectStub("nested");
+        }
+    }
+}
\ No newline at end of file
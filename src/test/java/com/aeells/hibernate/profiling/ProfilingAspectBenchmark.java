@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import com.aeells.hibernate.model.PersistentObjectStub;
+import com.aeells.hibernate.service.HibernateService;
+import com.aeells.hibernate.service.HibernateServiceImpl;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.orm.hibernate3.HibernateTemplate;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+
+/**
+ * Compares the per call cost of profiling through a Spring proxy against a woven {@link HibernateProfilingAspect}.
+ * Run manually, once as is for the unadvised and proxied figures and once with <code>-javaagent:aspectjweaver.jar</code>
+ * for the woven figure, e.g.
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.aeells.hibernate.profiling.ProfilingAspectBenchmark</code>.
+ */
+public final class ProfilingAspectBenchmark
+{
+    private static final int WARM_UP_ITERATIONS = 200000;
+
+    private static final int MEASURED_ITERATIONS = 2000000;
+
+    private static long sink;
+
+    public static void main(final String[] args) throws Exception
+    {
+        final HibernateServiceImpl target = new HibernateServiceImpl(new StubHibernateTemplate());
+
+        if (isWoven())
+        {
+            configure((HibernateProfilingAspect) HibernateProfilingAspect.class.getMethod("aspectOf").invoke(null));
+            run("woven aspect", target);
+        }
+        else
+        {
+            final HibernateProfilingAspect aspect = new HibernateProfilingAspect();
+            configure(aspect);
+
+            final AspectJProxyFactory factory = new AspectJProxyFactory(target);
+            factory.addAspect(aspect);
+
+            run("unadvised", target);
+            run("spring proxy", factory.<HibernateService>getProxy());
+        }
+
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    private static boolean isWoven()
+    {
+        for (final Field field : HibernateServiceImpl.class.getDeclaredFields())
+        {
+            if (field.getName().startsWith("ajc$"))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // statistics keep every call profiled while the handler discards records whatever the log level
+    private static void configure(final HibernateProfilingAspect aspect)
+    {
+        final HibernateProfilingInterceptor interceptor = new HibernateProfilingInterceptor();
+        interceptor.setStatistics(new ProfilingStatistics());
+        interceptor.setProfileEventHandler(new ProfileEventHandler()
+        {
+            @Override public void onEvent(final ProfileEvent event)
+            {
+                sink += event.getDurationNanos();
+            }
+        });
+        aspect.setInterceptor(interceptor);
+    }
+
+    private static void run(final String name, final HibernateService service)
+    {
+        for (int round = 0; round < 3; round++)
+        {
+            findById(service, WARM_UP_ITERATIONS);
+        }
+
+        System.out.println(name + ": " + ((double) findById(service, MEASURED_ITERATIONS) / MEASURED_ITERATIONS) + " ns/call");
+    }
+
+    private static long findById(final HibernateService service, final int iterations)
+    {
+        final long begin = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+        {
+            sink += service.findById(PersistentObjectStub.class, "1") == null ? 0 : 1;
+        }
+        return System.nanoTime() - begin;
+    }
+
+    private static final class StubHibernateTemplate extends HibernateTemplate
+    {
+        private final PersistentObjectStub stub = new PersistentObjectStub();
+
+        @Override public Object get(final Class entityClass, final Serializable id)
+        {
+            return stub;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+
+/**
+ * Compares the per call cost of the previous Joda based timing against {@link ProfilingClock}, the clock alone. Run
+ * manually, e.g.
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.aeells.hibernate.profiling.ProfilingClockBenchmark</code>.
+ * The overhead of the whole interceptor per call, profiled against unadvised, is measured by
+ * <code>HibernateProfilingInterceptorBenchmark</code> in the benchmarks module.
+ */
+public final class ProfilingClockBenchmark
+{
+    private static final int WARM_UP_ITERATIONS = 2000000;
+
+    private static final int MEASURED_ITERATIONS = 10000000;
+
+    private static long sink;
+
+    public static void main(final String[] args)
+    {
+        for (int round = 0; round < 3; round++)
+        {
+            jodaTiming(WARM_UP_ITERATIONS);
+            nanoTiming(WARM_UP_ITERATIONS);
+        }
+
+        report("joda DateTime/Duration", jodaTiming(MEASURED_ITERATIONS));
+        report("ProfilingClock", nanoTiming(MEASURED_ITERATIONS));
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    private static long jodaTiming(final int iterations)
+    {
+        final long begin = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+        {
+            final DateTime start = new DateTime();
+            sink += new Duration(start, new DateTime()).getMillis();
+        }
+        return System.nanoTime() - begin;
+    }
+
+    private static long nanoTiming(final int iterations)
+    {
+        final long begin = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+        {
+            final long start = ProfilingClock.now();
+            sink += ProfilingClock.elapsedSince(start);
+        }
+        return System.nanoTime() - begin;
+    }
+
+    private static void report(final String name, final long nanos)
+    {
+        System.out.println(name + ": " + ((double) nanos / MEASURED_ITERATIONS) + " ns/call");
+    }
+}
\ No newline at end of file
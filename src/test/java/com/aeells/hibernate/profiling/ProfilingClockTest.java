@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public final class ProfilingClockTest
+{
+    @Test
+    public void rendersSubMillisecondDurations()
+    {
+        assertThat(ProfilingClock.appendMillis(new StringBuilder(), 42000L).toString(), equalTo("0.042"));
+    }
+
+    @Test
+    public void rendersWholeMilliseconds()
+    {
+        assertThat(ProfilingClock.appendMillis(new StringBuilder(), 15000000L).toString(), equalTo("15.000"));
+    }
+
+    @Test
+    public void truncatesBelowMicrosecondPrecision()
+    {
+        assertThat(ProfilingClock.appendMillis(new StringBuilder(), 1234567L).toString(), equalTo("1.234"));
+    }
+
+    @Test
+    public void elapsedTimeIsMonotonic()
+    {
+        final long start = ProfilingClock.now();
+
+        assertThat(ProfilingClock.elapsedSince(start) >= 0, equalTo(true));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public final class ProfilingDataSourceTest
+{
+    private final DataSource mockTarget = mock(DataSource.class);
+
+    private final Connection mockConnection = mock(Connection.class);
+
+    private final ProfilingDataSource dataSource = new ProfilingDataSource(mockTarget);
+
+    @Test
+    public void timesAcquiringAndHoldingConnections() throws SQLException
+    {
+        when(mockTarget.getConnection()).thenReturn(mockConnection);
+
+        dataSource.beginCall();
+        final Connection connection = dataSource.getConnection();
+
+        assertThat(dataSource.getActive(), equalTo(1));
+        assertThat(dataSource.getAcquisitions(), equalTo(1L));
+
+        connection.close();
+        connection.close();
+
+        verify(mockConnection, times(2)).close();
+        assertThat(dataSource.getActive(), equalTo(0));
+        assertThat(dataSource.getMaxActive(), equalTo(1L));
+        assertThat(dataSource.getReleases(), equalTo(1L));
+        assertThat(dataSource.endCall().isUsed(), equalTo(true));
+
+        dataSource.beginCall();
+        assertThat(dataSource.endCall().isUsed(), equalTo(false));
+    }
+
+    @Test
+    public void countsCallersWaitingForAConnection() throws Exception
+    {
+        final CountDownLatch acquiring = new CountDownLatch(1);
+        final CountDownLatch available = new CountDownLatch(1);
+
+        when(mockTarget.getConnection()).thenAnswer(new Answer<Connection>()
+        {
+            @Override public Connection answer(final InvocationOnMock invocation) throws Throwable
+            {
+                acquiring.countDown();
+                available.await();
+                return mockConnection;
+            }
+        });
+
+        final Thread waiter = new Thread()
+        {
+            @Override public void run()
+            {
+                try
+                {
+                    dataSource.getConnection();
+                }
+                catch (final SQLException e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        waiter.start();
+        acquiring.await();
+
+        assertThat(dataSource.getWaiting(), equalTo(1));
+
+        available.countDown();
+        waiter.join();
+
+        assertThat(dataSource.getWaiting(), equalTo(0));
+        assertThat(dataSource.getMaxWaiting(), equalTo(1L));
+        assertThat(dataSource.getActive(), equalTo(1));
+    }
+
+    @Test
+    public void countsFailedAcquisitions() throws SQLException
+    {
+        when(mockTarget.getConnection()).thenThrow(new SQLException("pool exhausted"));
+
+        try
+        {
+            dataSource.getConnection();
+            fail();
+        }
+        catch (final SQLException e)
+        {
+            assertThat(dataSource.getAcquisitions(), equalTo(1L));
+            assertThat(dataSource.getWaiting(), equalTo(0));
+            assertThat(dataSource.getActive(), equalTo(0));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import com.aeells.hibernate.model.Child;
+import com.aeells.hibernate.model.Parent;
+import com.aeells.hibernate.service.HibernateService;
+import org.hibernate.criterion.DetachedCriteria;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.hibernate3.HibernateTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.transaction.TransactionConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+@RunWith(SpringJUnit4ClassRunner.class) @ContextConfiguration(locations = {"classpath:spring-test-context.xml"})
+@TransactionConfiguration(transactionManager = "transactionManager", defaultRollback = true) @Transactional
+public class ProfilingFlushEventListenerITest
+{
+    @Autowired
+    private HibernateService<Parent> hibernateService;
+
+    @Autowired
+    private HibernateTemplate hibernateTemplate;
+
+    @Autowired
+    private HibernateProfilingInterceptor persistenceProfiler;
+
+    @Before
+    public void initialise()
+    {
+        hibernateTemplate.flush();
+        persistenceProfiler.getStatistics().reset();
+        persistenceProfiler.getFlushStatistics().reset();
+    }
+
+    @Test
+    public void shouldAttributeFlushToPendingWrites()
+    {
+        for (int i = 0; i < 2; i++)
+        {
+            final Parent parent = new Parent(1);
+            parent.addChild(new Child(1, parent));
+            hibernateService.create(parent);
+        }
+
+        hibernateTemplate.flush();
+
+        final OperationStatistics flush = persistenceProfiler.getFlushStatistics().get("flush", "Parent");
+
+        assertThat(flush.getCalls(), equalTo(1L));
+        assertThat(flush.getTotalRows(), equalTo(4L));
+        assertThat(persistenceProfiler.getStatistics().get("create", "Parent").getCalls(), equalTo(2L));
+    }
+
+    @Test
+    public void shouldRecordFlushWithoutPendingWrites()
+    {
+        hibernateTemplate.flush();
+
+        assertThat(persistenceProfiler.getFlushStatistics().get("flush", "-").getCalls(), equalTo(1L));
+        assertThat(persistenceProfiler.getStatistics().getOperations().containsKey("flush|-"), equalTo(false));
+    }
+
+    @Test
+    public void shouldRecordAutoFlushAheadOfQuery()
+    {
+        final Parent parent = new Parent(1);
+        parent.addChild(new Child(1, parent));
+        hibernateService.create(parent);
+
+        hibernateService.find(DetachedCriteria.forClass(Parent.class));
+
+        final OperationStatistics autoFlush = persistenceProfiler.getFlushStatistics().get("autoFlush", "Parent");
+
+        assertThat(autoFlush.getCalls(), equalTo(1L));
+        assertThat(autoFlush.getTotalRows(), equalTo(2L));
+    }
+}
\ No newline at end of file
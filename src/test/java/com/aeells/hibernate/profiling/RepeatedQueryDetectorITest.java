@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import com.aeells.hibernate.model.Child;
+import com.aeells.hibernate.model.Parent;
+import com.aeells.hibernate.service.HibernateService;
+import org.hibernate.criterion.DetachedCriteria;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.hibernate3.HibernateTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.transaction.TransactionConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+@RunWith(SpringJUnit4ClassRunner.class) @ContextConfiguration(locations = {"classpath:spring-test-context.xml"})
+@TransactionConfiguration(transactionManager = "transactionManager", defaultRollback = true) @Transactional
+public class RepeatedQueryDetectorITest
+{
+    @Autowired
+    private HibernateService<Parent> hibernateService;
+
+    @Autowired
+    private HibernateTemplate hibernateTemplate;
+
+    @Autowired
+    private RepeatedQueryDetector repeatedQueryDetector;
+
+    @Test
+    public void shouldDetectLazyCollectionLoop()
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            final Parent parent = new Parent(1);
+            parent.addChild(new Child(1, parent));
+            hibernateService.create(parent);
+        }
+
+        hibernateTemplate.flush();
+        hibernateTemplate.clear();
+
+        final List<Parent> parents = hibernateService.find(DetachedCriteria.forClass(Parent.class));
+
+        for (final Parent parent : parents)
+        {
+            assertThat(parent.getChildren().size(), equalTo(1));
+        }
+
+        final List<RepeatedQueryDetector.RepeatedQuery> repeatedQueries = repeatedQueryDetector.getRepeatedQueries();
+
+        assertThat(repeatedQueries.size(), equalTo(1));
+        assertThat(repeatedQueries.get(0).getCount(), equalTo(3));
+        assertThat(repeatedQueries.get(0).getCall(), nullValue());
+        assertThat(repeatedQueries.get(0).getFingerprint(), containsString("from child"));
+    }
+
+    @Test
+    public void shouldNameCallActiveWhenFirstExecuted()
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            final Parent parent = new Parent(1);
+            parent.addChild(new Child(1, parent));
+            hibernateService.create(parent);
+        }
+
+        hibernateTemplate.flush();
+        hibernateTemplate.clear();
+
+        final List<Parent> parents = hibernateService.find(DetachedCriteria.forClass(Parent.class));
+        repeatedQueryDetector.enterCall("OrderService.placeOrder()");
+
+        for (final Parent parent : parents)
+        {
+            assertThat(parent.getChildren().size(), equalTo(1));
+        }
+
+        repeatedQueryDetector.exitCall();
+
+        assertThat(repeatedQueryDetector.getRepeatedQueries().get(0).getCall(), equalTo("OrderService.placeOrder()"));
+    }
+
+    @Test
+    public void shouldNotFlagSingleQueries()
+    {
+        hibernateService.find(DetachedCriteria.forClass(Parent.class));
+
+        assertThat(repeatedQueryDetector.getRepeatedQueries().size(), equalTo(0));
+    }
+
+    @Test
+    public void shouldNotRecordOutsideTransaction()
+    {
+        final RepeatedQueryDetector detector = new RepeatedQueryDetector();
+        detector.setThreshold(1);
+
+        detector.onPrepareStatement("select * from child where parent_id=?");
+        detector.onPrepareStatement("select * from child where parent_id=?");
+
+        assertThat(detector.getRepeatedQueries().size(), equalTo(0));
+    }
+
+    @Test
+    public void shouldFingerprintLiteralsAndParameterLists()
+    {
+        assertThat(RepeatedQueryDetector.fingerprint("select *\n  from CHILD where ID in (?, ?, ?) and NAME = 'o''brien' and V = 12"),
+                   equalTo("select * from child where id in (?) and name = ? and v = ?"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public final class SamplerTest
+{
+    private final Sampler sampler = new Sampler();
+
+    @Test
+    public void samplesEverythingByDefault()
+    {
+        assertThat(sampled(null, 1000), equalTo(1000));
+    }
+
+    @Test
+    public void samplesAtGlobalRate()
+    {
+        sampler.setSampleRate(0.1);
+
+        final int sampled = sampled(null, 10000);
+
+        assertThat(sampled, greaterThan(500));
+        assertThat(sampled, lessThan(1500));
+    }
+
+    @Test
+    public void entityRateOverridesGlobalRate()
+    {
+        sampler.setSampleRate(0d);
+
+        assertThat(sampled(profiledClass(1d), 100), equalTo(100));
+        assertThat(sampled(profiledClass(-1d), 100), equalTo(0));
+    }
+
+    @Test
+    public void capsSamplesPerSecond()
+    {
+        sampler.setMaxSampledPerSecond(10);
+
+        assertThat(sampled(null, 1000), lessThan(21));
+    }
+
+    @Test
+    public void slowCallsMeetGlobalThreshold()
+    {
+        sampler.setSlowCallThresholdNanos(1000L);
+
+        assertThat(sampler.isSlow(null, 999L), equalTo(false));
+        assertThat(sampler.isSlow(null, 1000L), equalTo(true));
+    }
+
+    @Test
+    public void entityThresholdOverridesGlobalThreshold()
+    {
+        sampler.setSlowCallThresholdNanos(1000L);
+        final ProfiledClass profiledClass = new ProfiledClass("Parent", "id", null, -1d, 50L, 0L);
+
+        assertThat(sampler.isSlow(profiledClass, 49999999L), equalTo(false));
+        assertThat(sampler.isSlow(profiledClass, 50000000L), equalTo(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRatesAboveOne()
+    {
+        sampler.setSampleRate(1.5);
+    }
+
+    private int sampled(final ProfiledClass profiledClass, final int calls)
+    {
+        int sampled = 0;
+        for (int i = 0; i < calls; i++)
+        {
+            if (sampler.sample(profiledClass))
+            {
+                sampled++;
+            }
+        }
+        return sampled;
+    }
+
+    private static ProfiledClass profiledClass(final double sampleRate)
+    {
+        return new ProfiledClass("Parent", "id", null, sampleRate, -1L, 0L);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2012 Andrew Eells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aeells.hibernate.profiling.analysis;
+
+import com.aeells.hibernate.profiling.HibernateCounter;
+import com.aeells.hibernate.profiling.ProfileLogReader;
+import com.aeells.hibernate.profiling.ProfileRecord;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+public final class ProfileLogAnalyzerTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsCurrentAndPreviousTextFormats() throws IOException
+    {
+        final ProfileLogReader reader = new ProfileLogReader(new StringReader(
+                "2012-01-01 12:00:00,123 HibernateServiceImpl|findById|Parent|1|0.412\n"
+                + "java.lang.IllegalStateException: not a profile record\n"
+                + "HibernateServiceImpl|find|Child|1|2|15\n"
+                + "HibernateServiceImpl|find|3.000\n"
+                + "HibernateServiceImpl|find|Parent|1,2,...|40.000|rows=3 bytes=72 sql=1 load=3 fetch=0 coll=3 hit=0 miss=0\n"));
+
+        final ProfileRecord first = reader.next();
+        assertThat(first.toString(), equalTo("HibernateServiceImpl|findById|Parent|1|0.412"));
+        assertThat(first.getTimestampMillis() > 0L, equalTo(true));
+
+        final ProfileRecord second = reader.next();
+        assertThat(second.getIdentifiers(), equalTo("1,2"));
+        assertThat(second.getDurationNanos(), equalTo(15000000L));
+        assertThat(second.getTimestampMillis(), equalTo(0L));
+
+        assertThat(reader.next().getEntity(), nullValue());
+
+        final ProfileRecord counted = reader.next();
+        assertThat(counted.getIdentifiers(), equalTo("1,2,..."));
+        assertThat(counted.getDurationNanos(), equalTo(40000000L));
+        assertThat(counted.getRowCount(), equalTo(3L));
+        assertThat(counted.getResultBytes(), equalTo(72L));
+        assertThat(counted.getCounter(HibernateCounter.COLLECTION_LOADS), equalTo(3L));
+
+        assertThat(reader.next(), nullValue());
+        reader.close();
+    }
+
+    @Test
+    public void mergesSummariesAcrossFiles() throws Exception
+    {
+        final File first = write("first.log", "HibernateServiceImpl|findById|Parent|1|1.000\n", 99);
+        final File second = write("second.log", "HibernateServiceImpl|findById|Parent|1|100.000\n", 1);
+        final File third = write("third.log", "HibernateServiceImpl|find|Child|1|2|5.000\n", 10);
+
+        final ProfileSummary summary = new ProfileLogAnalyzer(2).analyze(Arrays.asList(first, second, third));
+
+        assertThat(summary.getRecords(), equalTo(110L));
+        assertThat(summary.getOperation("findById|Parent").getCount(), equalTo(100L));
+        assertThat(summary.getOperation("findById|Parent").getMaxNanos(), equalTo(100000000L));
+        assertThat(summary.getOperation("find|Child").getCount(), equalTo(10L));
+
+        final ByteArrayOutputStream report = new ByteArrayOutputStream();
+        summary.report(new PrintStream(report, true), 1);
+
+        // a single 100ms outlier in a hundred calls does not reach the p99
+        assertThat(report.toString().split("\\r?\\n")[4], startsWith("find|Child"));
+        assertThat(report.toString(), containsString("Parent"));
+    }
+
+    @Test
+    public void countsFailedCallsApart() throws Exception
+    {
+        final File log = write("failed.log", "HibernateServiceImpl|update|Parent|1|2.000\n"
+                                             + "HibernateServiceImpl|update|Parent|1|50000.000|error=CannotAcquireLockException sql=1 load=0 fetch=0 coll=0 hit=0 miss=0\n", 2);
+
+        final ProfileSummary summary = new ProfileLogAnalyzer(1).analyze(Arrays.asList(log));
+
+        assertThat(summary.getOperation("update|Parent").getCount(), equalTo(2L));
+        assertThat(summary.getOperation("update|Parent").getMaxNanos(), equalTo(2000000L));
+        assertThat(summary.getOperation("update|Parent").getErrors(), equalTo(2L));
+        assertThat(summary.getOperation("update|Parent").getErrorNanos(), equalTo(100000000000L));
+
+        final ByteArrayOutputStream report = new ByteArrayOutputStream();
+        summary.report(new PrintStream(report, true), 5);
+
+        assertThat(report.toString(), containsString("failed operations by time lost"));
+    }
+
+    @Test
+    public void keepsTransactionsAndFlushesApartFromTheirCalls() throws Exception
+    {
+        final File log = write("rollups.log", "HibernateServiceImpl|create|Parent|1|1.000\n"
+                                              + "Flush|flush|Parent|create:Parent*1|3.000|rows=1\n"
+                                              + "Transaction|commit|OrderService.placeOrder|create:Parent*1|5.000\n", 2);
+
+        final ProfileSummary summary = new ProfileLogAnalyzer(1).analyze(Arrays.asList(log));
+
+        assertThat(summary.getRecords(), equalTo(6L));
+        assertThat(summary.getOperation("create|Parent").getCount(), equalTo(2L));
+        assertThat(summary.getOperation("flush|Parent"), nullValue());
+        assertThat(summary.getRollUp("Flush|flush|Parent").getCount(), equalTo(2L));
+        assertThat(summary.getRollUp("Transaction|commit|OrderService.placeOrder").getCount(), equalTo(2L));
+
+        final ByteArrayOutputStream report = new ByteArrayOutputStream();
+        summary.report(new PrintStream(report, true), 5);
+
+        assertThat(report.toString(), containsString("transactions and flushes"));
+    }
+
+    private File write(final String name, final String line, final int times) throws IOException
+    {
+        final File file = folder.newFile(name);
+        final FileWriter writer = new FileWriter(file);
+
+        for (int i = 0; i < times; i++)
+        {
+            writer.write(line);
+        }
+
+        writer.close();
+        return file;
+    }
+}
\ No newline at end of file
@@ -17,6 +17,10 @@ package com.aeells.hibernate.service;
 
 import com.aeells.hibernate.model.Child;
 import com.aeells.hibernate.model.Parent;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.impl.CriteriaImpl;
+import org.hibernate.stat.Statistics;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,9 +28,21 @@ import org.springframework.orm.hibernate3.HibernateTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.transaction.TransactionConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertThat;
 
@@ -40,6 +56,9 @@ public class HibernateServiceITest
     @Autowired
     private HibernateTemplate hibernateTemplate;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @Test
     public void shouldSaveEntity()
     {
@@ -78,6 +97,189 @@ public class HibernateServiceITest
         fullyAssertObjectGraph(parent, loadedParent);
     }
 
+    @Test
+    public void shouldCreateAllInBatches()
+    {
+        final List<Parent> parents = new ArrayList<Parent>();
+        for (int i = 0; i < 120; i++)
+        {
+            final Parent parent = new Parent(1);
+            parent.addChild(new Child(1, parent));
+            parents.add(parent);
+        }
+
+        final int written = hibernateService.createAll(parents);
+
+        assertThat(written, equalTo(120));
+        assertThat(hibernateService.find(DetachedCriteria.forClass(Parent.class)).size(), equalTo(120));
+    }
+
+    @Test
+    public void shouldScrollEveryRowAndEvictIt()
+    {
+        for (int i = 0; i < 25; i++)
+        {
+            hibernateService.create(new Parent(1));
+        }
+        hibernateTemplate.flush();
+        hibernateTemplate.clear();
+
+        final List<Parent> handled = new ArrayList<Parent>();
+        final int rows = hibernateService.scroll(DetachedCriteria.forClass(Parent.class), 10, new ResultHandler<Parent>()
+        {
+            @Override public void handle(final Parent model)
+            {
+                handled.add(model);
+            }
+        });
+
+        assertThat(rows, equalTo(25));
+        assertThat(handled.size(), equalTo(25));
+        assertThat(hibernateTemplate.contains(handled.get(0)), equalTo(false));
+    }
+
+    @Test
+    public void shouldScrollWithoutEvictingEntitiesAlreadyInTheSession()
+    {
+        final Parent parent = new Parent(1);
+        hibernateService.create(parent);
+        hibernateTemplate.flush();
+        parent.addChild(new Child(1, parent));
+
+        final DetachedCriteria criteria = DetachedCriteria.forClass(Parent.class);
+        final int rows = hibernateService.scroll(criteria, 10, new ResultHandler<Parent>()
+        {
+            @Override public void handle(final Parent model)
+            {
+            }
+        });
+        hibernateTemplate.flush();
+        hibernateTemplate.clear();
+
+        assertThat(rows, equalTo(1));
+        assertThat(hibernateService.findById(Parent.class, parent.getId()).getChildren().size(), equalTo(1));
+        assertThat(((CriteriaImpl) criteria.getExecutableCriteria(hibernateTemplate.getSessionFactory().getCurrentSession())).getFetchSize(), nullValue());
+    }
+
+    @Test
+    public void shouldPageByKeyWithoutRepeatingOrSkippingRows()
+    {
+        for (int i = 0; i < 25; i++)
+        {
+            hibernateService.create(new Parent(i % 3));
+        }
+        hibernateTemplate.flush();
+
+        final List<Parent> seen = new ArrayList<Parent>();
+        final List<Integer> pageSizes = new ArrayList<Integer>();
+        PageKey after = null;
+
+        do
+        {
+            final Page<Parent> page = hibernateService.findPage(DetachedCriteria.forClass(Parent.class), "version", after, 10);
+            seen.addAll(page.getResults());
+            pageSizes.add(page.getResults().size());
+            after = page.getNext();
+        }
+        while (after != null);
+
+        assertThat(pageSizes, equalTo(Arrays.asList(10, 10, 5)));
+        assertThat(new HashSet<Parent>(seen).size(), equalTo(25));
+    }
+
+    @Test
+    public void shouldPageByIdentifier()
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            hibernateService.create(new Parent(1));
+        }
+        hibernateTemplate.flush();
+
+        final Page<Parent> first = hibernateService.findPage(DetachedCriteria.forClass(Parent.class), "id", null, 2);
+        final Page<Parent> second = hibernateService.findPage(DetachedCriteria.forClass(Parent.class), "id", first.getNext(), 2);
+
+        assertThat(first.getResults().size(), equalTo(2));
+        assertThat(first.getNext().getId(), equalTo((Object) first.getResults().get(1).getId()));
+        assertThat(second.getResults().size(), equalTo(1));
+        assertThat(second.hasNext(), equalTo(false));
+    }
+
+    @Test
+    public void shouldFindByIdsFromSessionThenDatabaseInRequestedOrder()
+    {
+        final Parent first = new Parent(1);
+        final Parent second = new Parent(1);
+        final Parent third = new Parent(1);
+        persistAndEvict(first);
+        persistAndEvict(second);
+        hibernateService.create(third);
+        hibernateTemplate.flush();
+
+        final List<Parent> found = hibernateService.findByIds(Parent.class, Arrays.asList(third.getId(), "missing", first.getId(), second.getId(), third.getId()));
+
+        assertThat(found, equalTo(Arrays.asList(third, first, second)));
+        final MultiGetResult<Parent> result = (MultiGetResult<Parent>) found;
+        assertThat(result.getRequested(), equalTo(4));
+        assertThat(result.getSessionHits(), equalTo(1));
+        assertThat(result.getQueries(), equalTo(1));
+    }
+
+    // each step commits in its own session, as query results are stale to sessions opened before the insert committed
+    @Test
+    public void shouldFindThroughQueryCacheRegion()
+    {
+        final Parent parent = new Parent(7);
+        final DetachedCriteria criteria = DetachedCriteria.forClass(Parent.class).add(Restrictions.eq("version", 7));
+        final Statistics statistics = hibernateTemplate.getSessionFactory().getStatistics();
+        statistics.setStatisticsEnabled(true);
+
+        inNewTransaction(new TransactionCallbackWithoutResult()
+        {
+            @Override protected void doInTransactionWithoutResult(final TransactionStatus status)
+            {
+                hibernateService.create(parent);
+            }
+        });
+
+        try
+        {
+            assertThat(inNewTransaction(new TransactionCallback<List<Parent>>()
+            {
+                @Override public List<Parent> doInTransaction(final TransactionStatus status)
+                {
+                    return hibernateService.find(criteria, "referenceData");
+                }
+            }), equalTo(Arrays.asList(parent)));
+
+            final long hits = statistics.getQueryCacheHitCount();
+            assertThat(inNewTransaction(new TransactionCallback<Parent>()
+            {
+                @Override public Parent doInTransaction(final TransactionStatus status)
+                {
+                    return hibernateService.findUnique(criteria, "referenceData");
+                }
+            }), equalTo(parent));
+            assertThat(statistics.getQueryCacheHitCount(), equalTo(hits + 1));
+
+            assertThat(hibernateService.find(criteria), equalTo(Arrays.asList(parent)));
+            final CriteriaImpl executableCriteria = (CriteriaImpl) criteria.getExecutableCriteria(hibernateTemplate.getSessionFactory().getCurrentSession());
+            assertThat(executableCriteria.getCacheable(), equalTo(false));
+            assertThat(executableCriteria.getCacheRegion(), nullValue());
+        }
+        finally
+        {
+            statistics.setStatisticsEnabled(false);
+            inNewTransaction(new TransactionCallbackWithoutResult()
+            {
+                @Override protected void doInTransactionWithoutResult(final TransactionStatus status)
+                {
+                    hibernateTemplate.delete(parent);
+                }
+            });
+        }
+    }
+
     // todo aeells - requires full database integration tests...
 
     private void fullyAssertObjectGraph(final Parent parent, final Parent loadedParent)
@@ -88,6 +290,13 @@ public class HibernateServiceITest
         assertThat(loadedParent.getChildren(), CollectionMatcher.containsOnly(parent.getChildren()));
     }
 
+    private <T> T inNewTransaction(final TransactionCallback<T> callback)
+    {
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate.execute(callback);
+    }
+
     private void persistAndEvict(final Parent parent)
     {
         hibernateService.create(parent);
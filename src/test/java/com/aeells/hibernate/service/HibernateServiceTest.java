@@ -16,19 +16,26 @@
 package com.aeells.hibernate.service;
 
 import com.aeells.hibernate.model.PersistentObjectStub;
+import org.hibernate.Session;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Order;
 import org.junit.Test;
 import org.mockito.Matchers;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.orm.hibernate3.HibernateTemplate;
 
 import java.util.Arrays;
 
 import static org.hibernate.criterion.DetachedCriteria.forClass;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hibernate.criterion.Restrictions.eq;
+import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -127,6 +134,42 @@ public final class HibernateServiceTest
         verify(hibernateTemplate, times(0)).delete(stub);
     }
 
+    @Test
+    public void createAllShouldFlushAndClearEveryBatch()
+    {
+        final Session session = executeInSession();
+        stub.create = true;
+        final PersistentObjectStub disabled = new PersistentObjectStub();
+        disabled.create = false;
+
+        final int written = new HibernateServiceImpl(hibernateTemplate, 2).createAll(Arrays.asList(stub, disabled, stub, null, stub));
+
+        assertThat(written, equalTo(3));
+        verify(session, times(3)).saveOrUpdate(stub);
+        verify(session, times(0)).saveOrUpdate(disabled);
+        verify(session, times(2)).flush();
+        verify(session, times(2)).clear();
+    }
+
+    @Test
+    public void deleteAllShouldSkipEntitiesNotAllowedDelete()
+    {
+        final Session session = executeInSession();
+        stub.delete = false;
+
+        final int written = hibernateService.deleteAll(Arrays.asList(stub));
+
+        assertThat(written, equalTo(0));
+        verify(session, times(0)).delete(stub);
+        verify(session, times(0)).flush();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createAllThrowsExceptionWithNullModels()
+    {
+        hibernateService.createAll(null);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void findByIdThrowsExceptionWithNullDaoClass()
     {
@@ -209,4 +252,20 @@ public final class HibernateServiceTest
 
         verify(hibernateTemplate).findByCriteria(criteria, 10, 20);
     }
+
+    // runs callbacks against a mock session
+    private Session executeInSession()
+    {
+        final Session session = mock(Session.class);
+
+        when(hibernateTemplate.execute(any(HibernateCallback.class))).thenAnswer(new Answer<Object>()
+        {
+            @Override public Object answer(final InvocationOnMock invocation) throws Throwable
+            {
+                return ((HibernateCallback<?>) invocation.getArguments()[0]).doInHibernate(session);
+            }
+        });
+
+        return session;
+    }
 }
\ No newline at end of file